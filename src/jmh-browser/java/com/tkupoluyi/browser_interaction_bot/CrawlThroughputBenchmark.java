@@ -0,0 +1,63 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.event_handling.DefaultEventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end crawl of a generated local fixture in headless Chrome. Needs Chrome and a matching ChromeDriver.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CrawlThroughputBenchmark {
+    @Param({"200", "1000"})
+    int nodeCount;
+
+    File fixtureDirectory;
+    String fixtureUrl;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class CrawledEvents {
+        public long events;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        fixtureDirectory = Files.createTempDirectory("crawl-benchmark").toFile();
+        File fixture = new File(fixtureDirectory, "fixture.html");
+        FileUtils.writeStringToFile(fixture, BenchmarkFixtures.generateHtml(nodeCount, 6), StandardCharsets.UTF_8);
+        fixtureUrl = fixture.toURI().toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(fixtureDirectory);
+    }
+
+    @Benchmark
+    public Event crawl(CrawledEvents crawledEvents) throws InteractionBotException, IOException {
+        File outputDirectory = Files.createTempDirectory(fixtureDirectory.toPath(), "output").toFile();
+        ChromeExecution execution = new ChromeExecution(fixtureUrl, new DefaultEventHandler(), outputDirectory.getPath(), null, true);
+        Event baseEvent = execution.execute();
+        crawledEvents.events += countEvents(baseEvent);
+        return baseEvent;
+    }
+
+    private long countEvents(Event event) {
+        long count = 1;
+        for (Event child: event.getChildren()) {
+            count += countEvents(child);
+        }
+        return count;
+    }
+}
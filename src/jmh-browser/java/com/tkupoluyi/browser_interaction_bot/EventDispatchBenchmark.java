@@ -0,0 +1,80 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.event_handling.DefaultEventHandler;
+import com.tkupoluyi.browser_interaction_bot.event_handling.DispatchEventHandler;
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Triggering every discovered event of a generated fixture once, through Selenium Actions, in-page dispatch and
+// DevTools input events. Needs Chrome and a matching ChromeDriver.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class EventDispatchBenchmark {
+    @Param({"actions", "dispatch", "input"})
+    String events;
+
+    File fixtureDirectory;
+    String fixtureUrl;
+    ChromeDriver driver;
+    EventHandler eventHandler;
+    List<Event> discoveredEvents;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Triggers {
+        public long triggered;
+        public long failed;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        fixtureDirectory = Files.createTempDirectory("dispatch-benchmark").toFile();
+        File fixture = new File(fixtureDirectory, "fixture.html");
+        FileUtils.writeStringToFile(fixture, BenchmarkFixtures.generateHtml(1000, 6), StandardCharsets.UTF_8);
+        fixtureUrl = fixture.toURI().toString();
+        driver = new ChromeDriver(ChromeDriverService.createDefaultService(), ChromeExecution.createChromeOptions(null, true));
+        BrowserInteractions.openPage(driver, fixtureUrl);
+        discoveredEvents = new HTMLDocumentUtil(driver, HTMLDocumentUtil.BATCHED_DISCOVERY).getEventList();
+        if (events.equals("dispatch")) {
+            eventHandler = new DispatchEventHandler(DispatchEventHandler.SYNTHETIC);
+        } else if (events.equals("input")) {
+            eventHandler = new DispatchEventHandler(DispatchEventHandler.INPUT);
+        } else {
+            eventHandler = new DefaultEventHandler();
+        }
+        eventHandler.setDriver(driver);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        driver.quit();
+        FileUtils.deleteDirectory(fixtureDirectory);
+    }
+
+    @Benchmark
+    public void triggerAll(Triggers triggers) {
+        for (Event event: discoveredEvents) {
+            try {
+                eventHandler.triggerEvent(event);
+                triggers.triggered++;
+            } catch (InteractionBotException ex) {
+                triggers.failed++;
+            }
+        }
+    }
+}
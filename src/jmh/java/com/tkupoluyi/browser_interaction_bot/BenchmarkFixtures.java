@@ -0,0 +1,95 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Generated inputs for the benchmarks, seeded so every run sees the same documents and trees
+public class BenchmarkFixtures {
+
+    // A body of roughly nodeCount elements, mixing id, class and plain elements as well as skipped tags
+    public static String generateHtml(int nodeCount, int maxDepth) {
+        Random random = new Random(42);
+        StringBuilder html = new StringBuilder("<html><head><title>fixture</title></head><body>");
+        int[] remaining = {nodeCount};
+        while (remaining[0] > 0) {
+            appendElement(html, random, remaining, 1, maxDepth);
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static void appendElement(StringBuilder html, Random random, int[] remaining, int depth, int maxDepth) {
+        remaining[0]--;
+        String[] tags = {"div", "span", "a", "button", "ul", "li", "section", "input"};
+        String tag = tags[random.nextInt(tags.length)];
+        int attributeKind = random.nextInt(10);
+        html.append('<').append(tag);
+        if (attributeKind == 0) {
+            html.append(" id=\"node-").append(remaining[0]).append('"');
+        } else if (attributeKind < 5) {
+            html.append(" class=\"item item-").append(random.nextInt(20)).append('"');
+        }
+        if (random.nextInt(8) == 0) {
+            html.append(" onclick=\"void 0\"");
+        }
+        html.append('>');
+        if (random.nextInt(20) == 0) {
+            html.append("<img src=\"x.png\"><script>var x = 1;</script>");
+        }
+        int childCount = depth >= maxDepth ? 0 : random.nextInt(5);
+        for (int i = 0; i < childCount && remaining[0] > 0; i++) {
+            appendElement(html, random, remaining, depth + 1, maxDepth);
+        }
+        html.append("</").append(tag).append('>');
+    }
+
+    // The element in the shape DOM.getDocument returns it, with backendNodeIds numbered in document order
+    public static Map<String, Object> toCdpNode(Element element, int[] nextBackendNodeId) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("nodeType", 1);
+        node.put("localName", element.tagName());
+        node.put("backendNodeId", ++nextBackendNodeId[0]);
+        List<String> attributes = new ArrayList<>();
+        for (Attribute attribute: element.attributes()) {
+            attributes.add(attribute.getKey());
+            attributes.add(attribute.getValue());
+        }
+        node.put("attributes", attributes);
+        List<Map<String, Object>> children = new ArrayList<>();
+        for (Node child: element.childNodes()) {
+            if (child instanceof Element) {
+                children.add(toCdpNode((Element) child, nextBackendNodeId));
+            } else {
+                Map<String, Object> textNode = new HashMap<>();
+                textNode.put("nodeType", 3);
+                textNode.put("backendNodeId", ++nextBackendNodeId[0]);
+                children.add(textNode);
+            }
+        }
+        node.put("children", children);
+        node.put("childNodeCount", children.size());
+        return node;
+    }
+
+    // A tree of eventCount events where every parent has up to branching children, as built by the crawl
+    public static List<Event> generateEventTree(int eventCount, int branching) {
+        List<Event> events = new ArrayList<>();
+        Event baseEvent = new Event("baseEvent", "/html/body");
+        events.add(baseEvent);
+        String[] types = {"click", "mouseover", "keydown", "focus"};
+        for (int i = 1; i < eventCount; i++) {
+            Event parent = events.get((i - 1) / branching);
+            Event child = new Event(types[i % types.length], "(//div[@class='menu-item level-" + (i % 50) + "'])[" + i + "]");
+            parent.addChild(child);
+            events.add(child);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,78 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building, serializing, trace-writing and DOT-rendering synthetic event trees, from bushy (branching 8) to chains (branching 1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventTreeBenchmark {
+    @Param({"1000", "4000"})
+    int eventCount;
+
+    @Param({"1", "2", "8"})
+    int branching;
+
+    List<Event> events;
+
+    @Setup
+    public void setup() {
+        events = BenchmarkFixtures.generateEventTree(eventCount, branching);
+    }
+
+    @Benchmark
+    public List<Event> addChild() {
+        return BenchmarkFixtures.generateEventTree(eventCount, branching);
+    }
+
+    @Benchmark
+    public void serializeFullEventTrace(Blackhole blackhole) {
+        for (Event event: events) {
+            blackhole.consume(event.serializeFullEventTrace().toJSONString());
+        }
+    }
+
+    @Benchmark
+    public void serializeFullEventTraceString(Blackhole blackhole) {
+        for (Event event: events) {
+            blackhole.consume(event.serializeFullEventTraceString());
+        }
+    }
+
+    // The indexed trace, written and then streamed back, against the per-line JSON chains above
+    @Benchmark
+    public void writeAndReadIndexedTrace(Blackhole blackhole) throws IOException {
+        File traceFile = File.createTempFile("trace", ".bin");
+        TraceWriter traceWriter = new TraceWriter(traceFile.getPath(), 64, 1000);
+        for (Event event: events) {
+            traceWriter.append(event);
+        }
+        traceWriter.close();
+        try (TraceReader traceReader = new TraceReader(traceFile.getPath())) {
+            List<Event> chain;
+            while ((chain = traceReader.nextChain()) != null) {
+                blackhole.consume(chain);
+            }
+        }
+        traceFile.delete();
+        new File(traceFile.getPath() + ".idx").delete();
+    }
+
+    @Benchmark
+    public void generateFullDOTRepresentation(Blackhole blackhole) {
+        for (Event event: events) {
+            if (event.getChildren().isEmpty()) {
+                blackhole.consume(event.generateFullDOTRepresentation());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.graph.*;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Streaming every edge of a synthetic event tree through each graph format
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphWriterBenchmark {
+    @Param({"1000", "4000"})
+    int eventCount;
+
+    @Param({"1", "8"})
+    int branching;
+
+    @Param({"dot", "graphml", "jsonl", "binary"})
+    String graphFormat;
+
+    List<Event> events;
+    File outputDirectory;
+
+    @Setup
+    public void setup() throws IOException {
+        events = BenchmarkFixtures.generateEventTree(eventCount, branching);
+        outputDirectory = Files.createTempDirectory("graph-benchmark").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(outputDirectory);
+    }
+
+    @Benchmark
+    public void writeEdges() {
+        GraphWriter graphWriter = createGraphWriter();
+        for (Event event: events) {
+            if (event.getParent() == null) {
+                graphWriter.addNode(event);
+            } else {
+                graphWriter.addEdge(event.getParent(), event);
+            }
+        }
+        graphWriter.close();
+    }
+
+    private GraphWriter createGraphWriter() {
+        if (graphFormat.equals("graphml")) {
+            return new GraphMLGraphWriter(outputDirectory.getPath());
+        } else if (graphFormat.equals("jsonl")) {
+            return new JsonLinesGraphWriter(outputDirectory.getPath());
+        } else if (graphFormat.equals("binary")) {
+            return new BinaryAdjacencyGraphWriter(outputDirectory.getPath());
+        }
+        return new DOTGraphWriter(outputDirectory.getPath());
+    }
+}
@@ -0,0 +1,65 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Xpath construction and global xpath bookkeeping of the dfs and iterative discovery walks, with listener lookups stubbed out
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HTMLDocumentUtilBenchmark {
+    @Param({"10000", "50000", "200000"})
+    int nodeCount;
+
+    @Param({"8", "64"})
+    int maxDepth;
+
+    Document document;
+    ArrayList<Map> listeners;
+    Map<String, Object> cdpBody;
+    Map<Object, List<String>> listenerTypes;
+
+    @Setup
+    public void setup() {
+        document = Jsoup.parse(BenchmarkFixtures.generateHtml(nodeCount, maxDepth));
+        Map<String, Object> listener = new HashMap<>();
+        listener.put("type", "click");
+        listeners = new ArrayList<>(Collections.singletonList(listener));
+        int[] backendNodeIds = {0};
+        cdpBody = BenchmarkFixtures.toCdpNode(document.body(), backendNodeIds);
+        listenerTypes = new HashMap<>();
+        for (long backendNodeId = 7; backendNodeId <= backendNodeIds[0]; backendNodeId += 7) {
+            listenerTypes.put(backendNodeId, Collections.singletonList("click"));
+        }
+    }
+
+    @Benchmark
+    public Object dfsDiscovery() {
+        // Every seventh element reports a listener, roughly the density seen on crawled pages
+        int[] visited = {0};
+        return new HTMLDocumentUtil(document, xpath -> ++visited[0] % 7 == 0 ? listeners : new ArrayList<>()).getEventList();
+    }
+
+    // The explicit-stack walk used by batched and streaming discovery, over the same document as CDP nodes
+    @Benchmark
+    public Object iterativeDiscovery() {
+        return new HTMLDocumentUtil(cdpBody, listenerTypes).getEventList();
+    }
+
+    @Benchmark
+    public Object parseAndDiscover() {
+        Document parsed = Jsoup.parse(document.outerHtml());
+        return new HTMLDocumentUtil(parsed, xpath -> new ArrayList<>()).getEventList();
+    }
+}
@@ -0,0 +1,227 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.cache.ResponseCache;
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Crawls a list of sites in one JVM on a pool of browser sessions, so Chrome and ChromeDriver start once per
+// session instead of once per site. Sites are taken by priority and then list order, skipping sites whose origin
+// already has maxPerOrigin crawls running. Each site gets its own output directory, and finished sites are appended
+// to a completed file so that running the same batch again only crawls what is left.
+public class BatchCrawler {
+    private List<SiteCrawl> pendingSites;
+    private List<SiteCrawl> finishedSites;
+    private Map<String, Integer> activeCrawlsByOrigin;
+    private String outputRootDirectory;
+    private int sessionCount;
+    private int maxPerOrigin;
+    private ChromeOptions chromeOptions;
+    private Supplier<EventHandler> eventHandlerFactory;
+    private Consumer<ChromeExecution> executionConfigurer;
+    private ResponseCache responseCache;
+    private SessionPool sessionPool;
+    private boolean sharedBrowser;
+    private FileWriter reportWriter;
+    private FileWriter completedWriter;
+
+    BatchCrawler(List<SiteCrawl> sites, String outputRootDirectory, int sessionCount, int maxPerOrigin, ChromeOptions chromeOptions,
+                 boolean sharedBrowser, Supplier<EventHandler> eventHandlerFactory, Consumer<ChromeExecution> executionConfigurer) {
+        this.pendingSites = new ArrayList<>(sites);
+        this.pendingSites.sort(Comparator.comparingInt(SiteCrawl::getPriority).reversed().thenComparingInt(SiteCrawl::getOrder));
+        this.finishedSites = new ArrayList<>();
+        this.activeCrawlsByOrigin = new HashMap<>();
+        this.outputRootDirectory = outputRootDirectory;
+        this.sessionCount = Math.max(1, sessionCount);
+        this.maxPerOrigin = Math.max(1, maxPerOrigin);
+        this.chromeOptions = chromeOptions;
+        this.sharedBrowser = sharedBrowser;
+        this.eventHandlerFactory = eventHandlerFactory;
+        this.executionConfigurer = executionConfigurer;
+    }
+
+    // Each line is a url, optionally followed by a priority (higher runs first) and a time budget in seconds
+    static List<SiteCrawl> readSiteList(String siteListFileName, long defaultTimeBudgetMillis) throws IOException {
+        List<SiteCrawl> sites = new ArrayList<>();
+        for (String line: Files.readAllLines(Paths.get(siteListFileName))) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            int priority = fields.length > 1 ? Integer.parseInt(fields[1]) : 0;
+            long timeBudgetMillis = fields.length > 2 ? Long.parseLong(fields[2]) * 1000 : defaultTimeBudgetMillis;
+            sites.add(new SiteCrawl(fields[0], priority, timeBudgetMillis, sites.size()));
+        }
+        return sites;
+    }
+
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public void run() throws IOException {
+        Files.createDirectories(Paths.get(outputRootDirectory));
+        String completedFileName = outputRootDirectory + "/completed";
+        if (Files.exists(Paths.get(completedFileName))) {
+            Set<String> completedUrls = new HashSet<>(Files.readAllLines(Paths.get(completedFileName)));
+            pendingSites.removeIf(site -> completedUrls.contains(site.getUrl()));
+        }
+        for (SiteCrawl site: pendingSites) {
+            site.setOutputFileDirectory(outputRootDirectory + "/" + String.format("%05d", site.getOrder()) + "_" + site.getOrigin().replaceAll("[^A-Za-z0-9.-]+", "_"));
+        }
+        reportWriter = new FileWriter(outputRootDirectory + "/batch_report.tsv", true);
+        completedWriter = new FileWriter(completedFileName, true);
+        System.out.println("Batch: " + pendingSites.size() + " sites on " + sessionCount + " sessions");
+
+        long batchStartMillis = System.currentTimeMillis();
+        sessionPool = new SessionPool(chromeOptions, sessionCount, sharedBrowser);
+        if (responseCache != null) {
+            sessionPool.setResponseCache(responseCache);
+        }
+        List<Thread> sessionThreads = new ArrayList<>();
+        for (int i = 0; i < sessionCount; i++) {
+            Thread sessionThread = new Thread(this::runSession, "batch-session-" + i);
+            sessionThreads.add(sessionThread);
+            sessionThread.start();
+        }
+        for (Thread sessionThread: sessionThreads) {
+            try {
+                sessionThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sessionPool.close();
+        reportWriter.close();
+        completedWriter.close();
+        if (responseCache != null) {
+            responseCache.printReport();
+            responseCache.close();
+        }
+        printReport(System.currentTimeMillis() - batchStartMillis);
+    }
+
+    private void runSession() {
+        SiteCrawl site;
+        while ((site = takeSite()) != null) {
+            try {
+                crawlSite(site);
+            } finally {
+                releaseSite(site);
+            }
+        }
+    }
+
+    // The execution borrows a session for the crawl, and closing it hands the session back to the pool
+    private void crawlSite(SiteCrawl site) {
+        long start = System.currentTimeMillis();
+        String status = "complete";
+        int eventCount = 0;
+        ChromeExecution execution = null;
+        try {
+            Files.createDirectories(Paths.get(site.getOutputFileDirectory()));
+            execution = new ChromeExecution(site.getUrl(), eventHandlerFactory.get(), site.getOutputFileDirectory(), sessionPool);
+            executionConfigurer.accept(execution);
+            execution.setTimeBudget(site.getTimeBudgetMillis());
+            eventCount = countEvents(execution.execute()) - 1;
+            if (execution.isOverBudget()) {
+                status = "budget";
+            }
+        } catch (InteractionBotException ex) {
+            System.out.println("Error crawling " + site.getUrl() + ", " + ex.getExceptionType());
+            status = "failed";
+            execution.closeTools();
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Error crawling " + site.getUrl() + ", " + ex.getMessage());
+            status = "failed";
+            if (execution != null) {
+                execution.closeTools();
+            }
+        }
+        site.complete(status, eventCount, System.currentTimeMillis() - start);
+        recordSite(site);
+    }
+
+    private int countEvents(Event event) {
+        int count = 1;
+        for (Event child: event.getChildren()) {
+            count += countEvents(child);
+        }
+        return count;
+    }
+
+    // Blocks until a site whose origin is below its cap is available, null once every site has been handed out
+    private synchronized SiteCrawl takeSite() {
+        while (!pendingSites.isEmpty()) {
+            Iterator<SiteCrawl> sites = pendingSites.iterator();
+            while (sites.hasNext()) {
+                SiteCrawl site = sites.next();
+                if (activeCrawlsByOrigin.getOrDefault(site.getOrigin(), 0) < maxPerOrigin) {
+                    sites.remove();
+                    activeCrawlsByOrigin.merge(site.getOrigin(), 1, Integer::sum);
+                    return site;
+                }
+            }
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void releaseSite(SiteCrawl site) {
+        activeCrawlsByOrigin.merge(site.getOrigin(), -1, Integer::sum);
+        notifyAll();
+    }
+
+    private synchronized void recordSite(SiteCrawl site) {
+        finishedSites.add(site);
+        System.out.println("Site " + site.getUrl() + ": " + site.getStatus() + ", " + site.getEventCount() + " events in " + site.getElapsedMillis() + "ms");
+        try {
+            reportWriter.write(site.getUrl() + "\t" + site.getStatus() + "\t" + site.getEventCount() + "\t" + site.getElapsedMillis() + "\t" + site.getOutputFileDirectory() + "\n");
+            reportWriter.flush();
+            if (!site.getStatus().equals("failed")) {
+                completedWriter.write(site.getUrl() + "\n");
+                completedWriter.flush();
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing batch report");
+        }
+    }
+
+    private void printReport(long elapsedMillis) {
+        if (finishedSites.isEmpty()) {
+            return;
+        }
+        List<Long> latencies = new ArrayList<>();
+        int failedCount = 0;
+        for (SiteCrawl site: finishedSites) {
+            latencies.add(site.getElapsedMillis());
+            if (site.getStatus().equals("failed")) {
+                failedCount++;
+            }
+        }
+        Collections.sort(latencies);
+        double sitesPerHour = finishedSites.size() * 3600000.0 / Math.max(1, elapsedMillis);
+        System.out.println("Batch: " + finishedSites.size() + " sites (" + failedCount + " failed) in " + elapsedMillis + "ms, "
+                + String.format("%.1f", sitesPerHour) + " sites/hour");
+        System.out.println("Site latency: p50 " + percentile(latencies, 50) + "ms, p90 " + percentile(latencies, 90)
+                + "ms, max " + latencies.get(latencies.size() - 1) + "ms");
+    }
+
+    private long percentile(List<Long> sortedValues, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, index));
+    }
+}
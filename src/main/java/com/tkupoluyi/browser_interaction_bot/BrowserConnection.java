@@ -0,0 +1,88 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.Connection;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.target.Target;
+import org.openqa.selenium.devtools.target.model.SessionID;
+import org.openqa.selenium.devtools.target.model.TargetID;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+
+import java.io.Closeable;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+// A DevTools connection to the browser target of the Chrome behind a driver. The browser target accepts the Target
+// domain commands that create and dispose browser contexts, and sessions attached through it are bound to one
+// specific tab, where driver.getDevTools() attaches to whichever page it finds first.
+public class BrowserConnection implements Closeable {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private Connection connection;
+
+    public BrowserConnection(ChromeDriver driver) {
+        String debuggerAddress = getDebuggerAddress(driver);
+        if (debuggerAddress == null) {
+            throw new WebDriverException("Browser does not report a debugger address");
+        }
+        try {
+            HttpClient client = HttpClient.Factory.createDefault().createClient(new URL("http://" + debuggerAddress));
+            HttpResponse response = client.execute(new HttpRequest(HttpMethod.GET, "/json/version"));
+            JSONObject version = (JSONObject) new JSONParser().parse(Contents.string(response));
+            this.connection = new Connection(client, (String) version.get("webSocketDebuggerUrl"));
+        } catch (MalformedURLException | ParseException ex) {
+            throw new WebDriverException("Could not connect to the browser target at " + debuggerAddress, ex);
+        }
+    }
+
+    static String getDebuggerAddress(ChromeDriver driver) {
+        Object chromeOptions = driver.getCapabilities().getCapability(ChromeOptions.CAPABILITY);
+        return chromeOptions instanceof Map ? (String) ((Map) chromeOptions).get("debuggerAddress") : null;
+    }
+
+    // Sends to the browser target itself
+    public Map<String, Object> send(String method, Map<String, Object> params) {
+        return send(null, method, params);
+    }
+
+    // Sends to the tab behind sessionId, as returned by attach
+    public Map<String, Object> send(String sessionId, String method, Map<String, Object> params) {
+        Timer timer = Metrics.timer("cdp_call", "method", method);
+        long start = timer.start();
+        try {
+            return connection.sendAndWait(sessionId == null ? null : new SessionID(sessionId), new Command<Map<String, Object>>(method, params, Map.class), TIMEOUT);
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    // Attaches a flat session to the tab, so its commands and events travel over this connection
+    public String attach(String targetId) {
+        return connection.sendAndWait(null, Target.attachToTarget(new TargetID(targetId), Optional.of(true)), TIMEOUT).toString();
+    }
+
+    public void addListener(String eventMethod, Consumer<Map<String, Object>> listener) {
+        connection.addListener(new Event<Map<String, Object>>(eventMethod, input -> input.read(Map.class)), listener);
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+}
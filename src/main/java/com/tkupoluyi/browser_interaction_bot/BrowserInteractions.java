@@ -1,76 +1,157 @@
 package com.tkupoluyi.browser_interaction_bot;
 
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import com.tkupoluyi.browser_interaction_bot.readiness.FixedDelayReadinessStrategy;
+import com.tkupoluyi.browser_interaction_bot.readiness.ReadinessReport;
+import com.tkupoluyi.browser_interaction_bot.readiness.ReadinessStrategy;
 import org.apache.commons.io.FileUtils;
 import org.openqa.selenium.NoSuchWindowException;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.UnhandledAlertException;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class BrowserInteractions {
-    public static String openPage(ChromeDriver driver, String url) {
-        try {
-            driver.get(url);
-            waitForPageLoad(driver);
-        } catch (UnhandledAlertException ignored) { }
+    private static volatile ReadinessStrategy readinessStrategy = new FixedDelayReadinessStrategy();
+    private static final ReadinessReport readinessReport = new ReadinessReport();
+    private static final Timer pageLoadTimer = Metrics.timer("page_load");
+    private static final Timer[] readinessTimers = {
+            Metrics.timer("readiness_wait", "type", "page_load"),
+            Metrics.timer("readiness_wait", "type", "scroll"),
+            Metrics.timer("readiness_wait", "type", "screenshot")
+    };
+    private static final Timer screenshotCaptureTimer = Metrics.timer("screenshot_capture");
+    private static final Timer screenshotWriteTimer = Metrics.timer("screenshot_write");
 
-        return driver.getCurrentUrl(); // This sets url to what it is when page has loaded
+    public static void setReadinessStrategy(ReadinessStrategy strategy) {
+        readinessStrategy = strategy;
     }
 
-    public static void waitForPageLoad(ChromeDriver driver) {
-        String loadState = driver.executeScript("return document.readyState").toString();
-        while (!loadState.equals("complete")) {
-            loadState = driver.executeScript("return document.readyState").toString();
+    public static ReadinessReport getReadinessReport() {
+        return readinessReport;
+    }
+
+    public static void waitUntilReady(ChromeDriver driver, int waitType) {
+        long start = readinessTimers[waitType].start();
+        readinessStrategy.waitUntilReady(driver, waitType);
+        readinessReport.record(waitType, readinessTimers[waitType].stop(start) / 1000000);
+    }
+
+    // Every synchronous DevTools command goes through here, so each method is timed separately and bounded by the
+    // operation deadline
+    public static Map<String, Object> executeCdpCommand(ChromeDriver driver, String method, Map<String, Object> params) {
+        Timer timer = Metrics.timer("cdp_call", "method", method);
+        long start = timer.start();
+        try {
+            return DeadlineExecutor.call("cdp_command", () -> driver.executeCdpCommand(method, params));
+        } finally {
+            timer.stop(start);
         }
+    }
 
+    // Loads url and waits for it within the page load deadline
+    public static String openPage(ChromeDriver driver, String url) {
+        long start = pageLoadTimer.start();
         try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            DeadlineExecutor.call("page_load", DeadlineExecutor.getPageLoadDeadlineMillis(), () -> {
+                try {
+                    driver.get(url);
+                    waitForPageLoad(driver);
+                } catch (UnhandledAlertException ignored) { }
+                return null;
+            });
+        } finally {
+            pageLoadTimer.stop(start);
         }
+
+        return getCurrentUrl(driver); // This sets url to what it is when page has loaded
+    }
+
+    public static String getCurrentUrl(ChromeDriver driver) {
+        return DeadlineExecutor.call("current_url", driver::getCurrentUrl);
+    }
+
+    public static void waitForPageLoad(ChromeDriver driver) {
+        waitUntilReady(driver, ReadinessStrategy.PAGE_LOAD);
     }
 
     public static void scrollToTop(ChromeDriver driver) {
-        driver.executeScript("window.scrollTo(0, 0)");
+        DeadlineExecutor.call("scroll", () -> {
+            driver.executeScript("window.scrollTo(0, 0)");
+            waitUntilReady(driver, ReadinessStrategy.SCROLL);
+            return null;
+        });
+    }
+
+    // Returns the number of elements on the page and whether the element at xpath is visible (1) or not (0),
+    // or null when the page could not be measured
+    public static long[] measurePage(ChromeDriver driver, String xpath) {
         try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            List<Long> measures = DeadlineExecutor.call("measure_page", () -> (List<Long>) driver.executeScript(
+                    "var element = null;" +
+                    "try { element = document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; } catch (e) { }" +
+                    "var rect = element ? element.getBoundingClientRect() : null;" +
+                    "return [document.getElementsByTagName('*').length, rect && rect.width > 0 && rect.height > 0 ? 1 : 0];", xpath));
+            return new long[]{measures.get(0), measures.get(1)};
+        } catch (WebDriverException ex) {
+            System.out.println("Could not measure page, " + ex.getMessage());
+            return null;
         }
     }
 
+    // Closes the other tabs of the driver's own browser context, such as popups its page opened, through the Target
+    // domain rather than by switching windows. Drivers sharing one browser through separate contexts never close
+    // each other's tabs, and the driver stays on its current window.
     public static void closeExtraneousTabs(ChromeDriver driver, int limit) {
-        if (driver.getWindowHandles().size() < limit) {
+        if (driver.getWindowHandles().size() <= limit) {
             return;
         }
-        else {
-            try {
-                String originalHandle = driver.getWindowHandle();
-                for (String handle : driver.getWindowHandles()) {
-                    if (!handle.equals(originalHandle)) {
-                        driver.switchTo().window(handle);
-                        driver.close();
-                    }
+        try {
+            String currentTarget = SessionPool.getContextTarget(driver);
+            if (currentTarget == null) {
+                currentTarget = driver.getWindowHandle();
+            }
+            List<Map> targetInfos = (List<Map>) executeCdpCommand(driver, "Target.getTargets", new HashMap<>()).get("targetInfos");
+            Object browserContextId = null;
+            for (Map targetInfo: targetInfos) {
+                if (currentTarget.endsWith((String) targetInfo.get("targetId"))) {
+                    browserContextId = targetInfo.get("browserContextId");
                 }
-                driver.switchTo().window(originalHandle);
-            } catch (NoSuchWindowException ex) {
-                System.out.println("Window already closed");
             }
+            for (Map targetInfo: targetInfos) {
+                String targetId = (String) targetInfo.get("targetId");
+                if ("page".equals(targetInfo.get("type")) && !currentTarget.endsWith(targetId) && Objects.equals(browserContextId, targetInfo.get("browserContextId"))) {
+                    Map<String, Object> closeQuery = new HashMap<>();
+                    closeQuery.put("targetId", targetId);
+                    executeCdpCommand(driver, "Target.closeTarget", closeQuery);
+                }
+            }
+        } catch (NoSuchWindowException ex) {
+            System.out.println("Window already closed");
         }
     }
 
     public static void screenshot(ChromeDriver driver, String fileName) {
-        try {
-            Thread.sleep(5000);
-        } catch (InterruptedException ignored) { }
-        File scrFile = ((TakesScreenshot)driver).getScreenshotAs(OutputType.FILE);
+        waitUntilReady(driver, ReadinessStrategy.SCREENSHOT);
+        long captureStart = screenshotCaptureTimer.start();
+        File scrFile = DeadlineExecutor.call("screenshot", () -> ((TakesScreenshot)driver).getScreenshotAs(OutputType.FILE));
+        long writeStart = screenshotWriteTimer.start();
+        screenshotCaptureTimer.record(writeStart - captureStart);
         try {
             FileUtils.copyFile(scrFile, new File(fileName+ ".png"));
         } catch (Exception exception) {
             System.out.println(exception.getMessage());
             System.out.println("Error in screenshot");
+        } finally {
+            screenshotWriteTimer.stop(writeStart);
         }
     }
 }
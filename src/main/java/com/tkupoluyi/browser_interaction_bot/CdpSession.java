@@ -0,0 +1,87 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// A DevTools session for CDP domains that need event subscriptions, which executeCdpCommand cannot provide.
+// Commands and events are exchanged as plain maps, the same shape executeCdpCommand returns. A driver that shares
+// its browser with other contexts gets a session attached to its own tab through a browser connection.
+public class CdpSession {
+    // The DevTools of a driver is shared by every session on it and can only clear all of its listeners at once, so
+    // each event is subscribed once per DevTools and passed on to the listeners of the sessions still open
+    private static final Map<DevTools, Map<String, List<Consumer<Map<String, Object>>>>> devToolsListeners = new WeakHashMap<>();
+
+    private DevTools devTools;
+    private BrowserConnection browserConnection;
+    private String sessionId;
+    private List<Runnable> listenerRemovals = new ArrayList<>();
+
+    public CdpSession(ChromeDriver driver) {
+        String targetId = SessionPool.getContextTarget(driver);
+        if (targetId != null) {
+            this.browserConnection = new BrowserConnection(driver);
+            this.sessionId = browserConnection.attach(targetId);
+            return;
+        }
+        this.devTools = driver.getDevTools();
+        this.devTools.createSessionIfThereIsNotOne();
+    }
+
+    public Map<String, Object> send(String method, Map<String, Object> params) {
+        if (browserConnection != null) {
+            return browserConnection.send(sessionId, method, params);
+        }
+        Timer timer = Metrics.timer("cdp_call", "method", method);
+        long start = timer.start();
+        try {
+            return devTools.send(new Command<Map<String, Object>>(method, params, Map.class));
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    public void addListener(String eventMethod, Consumer<Map<String, Object>> listener) {
+        if (browserConnection != null) {
+            browserConnection.addListener(eventMethod, listener);
+            return;
+        }
+        synchronized (devToolsListeners) {
+            Map<String, List<Consumer<Map<String, Object>>>> listeners = devToolsListeners.computeIfAbsent(devTools, key -> new HashMap<>());
+            List<Consumer<Map<String, Object>>> eventListeners = listeners.get(eventMethod);
+            if (eventListeners == null) {
+                List<Consumer<Map<String, Object>>> subscribedListeners = new CopyOnWriteArrayList<>();
+                devTools.addListener(new Event<Map<String, Object>>(eventMethod, input -> input.read(Map.class)), event -> {
+                    for (Consumer<Map<String, Object>> subscribedListener: subscribedListeners) {
+                        subscribedListener.accept(event);
+                    }
+                });
+                listeners.put(eventMethod, subscribedListeners);
+                eventListeners = subscribedListeners;
+            }
+            eventListeners.add(listener);
+            List<Consumer<Map<String, Object>>> removedFrom = eventListeners;
+            listenerRemovals.add(() -> removedFrom.remove(listener));
+        }
+    }
+
+    public void close() {
+        if (browserConnection != null) {
+            browserConnection.close();
+            return;
+        }
+        synchronized (devToolsListeners) {
+            for (Runnable listenerRemoval: listenerRemovals) {
+                listenerRemoval.run();
+            }
+            listenerRemovals.clear();
+        }
+    }
+}
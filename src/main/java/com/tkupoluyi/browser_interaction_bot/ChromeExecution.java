@@ -1,7 +1,18 @@
 package com.tkupoluyi.browser_interaction_bot;
 
+import com.tkupoluyi.browser_interaction_bot.cache.ResponseCache;
 import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.DeadlineExceededException;
 import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.exploration.BreadthFirstStrategy;
+import com.tkupoluyi.browser_interaction_bot.exploration.CoverageCurve;
+import com.tkupoluyi.browser_interaction_bot.exploration.ExplorationStrategy;
+import com.tkupoluyi.browser_interaction_bot.graph.*;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.ProbeLog;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import com.tkupoluyi.browser_interaction_bot.readiness.ReadinessStrategy;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
@@ -10,18 +21,49 @@ import java.io.*;
 import java.util.*;
 
 public class ChromeExecution {
+    static final Timer replayTimer = Metrics.timer("predecessor_replay");
+    static final Timer restoreTimer = Metrics.timer("state_restore");
+
     ChromeDriver driver;
     String url;
     FileOutputStream outputFile;
     String outputFileDirectory = "screenshots";
     FileWriter traceFileWriter;
+    TraceWriter traceWriter;
+    String traceFormat = "binary";
     ChromeOptions chromeOptions;
     ChromeDriverService chromeDriverService;
     boolean persistToFile;
     long startTimeMillis;
     int screenshotCount = 0;
-    DOTFileBuilder dotFileBuilder;
+    List<GraphWriter> graphWriters;
     EventHandler eventHandler;
+    int discoveryMode = HTMLDocumentUtil.DFS_DISCOVERY;
+    boolean snapshotRestore = false;
+    int verifiedRestoreCount = 0;
+    int divergedRestoreCount = 0;
+    int fallbackReloadCount = 0;
+    ResponseCache responseCache;
+    ProbePlanner probePlanner;
+    CrawlCheckpoint checkpoint;
+    boolean resume = false;
+    ScreenshotPipeline screenshotPipeline;
+    SessionPool sessionPool;
+    long timeBudgetMillis = 0;
+    ProbeLog probeLog;
+    ExplorationStrategy explorationStrategy = new BreadthFirstStrategy();
+    CoverageCurve coverageCurve;
+    StateAbstraction stateAbstraction;
+    IncrementalCrawl incrementalCrawl;
+    LayoutPrefilter layoutPrefilter;
+    Set<Long> stateSignatures = new HashSet<>();
+    int processedCount = 0;
+    int discoveredCount = 0;
+    // Screenshot numbers of parents that hung the browser, 0 when the parent hung before its screenshot
+    Map<Event, Integer> hungParents = new IdentityHashMap<>();
+    int parentScreenshotNumber = 0;
+    int relaunchCount = 0;
+    int hungCandidateCount = 0;
 
     ChromeExecution(String url, EventHandler eventHandler) {
         setDefaultChromeOptions();
@@ -31,7 +73,7 @@ public class ChromeExecution {
         this.startTimeMillis = (new Date()).getTime();
         this.eventHandler = eventHandler;
         this.eventHandler.setDriver(driver);
-        dotFileBuilder = new DOTFileBuilder(outputFileDirectory);
+        setGraphFormats(Collections.singletonList("dot"));
     }
 
     ChromeExecution(String url, EventHandler eventHandler, String outputFileDirectory) {
@@ -44,7 +86,7 @@ public class ChromeExecution {
         this.outputFile = null;
         this.eventHandler = eventHandler;
         this.eventHandler.setDriver(driver);
-        dotFileBuilder = new DOTFileBuilder(outputFileDirectory);
+        setGraphFormats(Collections.singletonList("dot"));
     }
 
     ChromeExecution(String url, EventHandler eventHandler, String outputFileDirectory, String proxyUrl) {
@@ -58,126 +100,666 @@ public class ChromeExecution {
         this.startTimeMillis = (new Date()).getTime();
         this.eventHandler = eventHandler;
         this.eventHandler.setDriver(driver);
-        dotFileBuilder = new DOTFileBuilder(outputFileDirectory);
+        setGraphFormats(Collections.singletonList("dot"));
+    }
+
+    ChromeExecution(String url, EventHandler eventHandler, String outputFileDirectory, String proxyUrl, boolean headless) {
+        setDefaultChromeOptions();
+        if (proxyUrl != null) {
+            chromeOptions.addArguments("--proxy-server="+proxyUrl);
+        }
+        if (headless) {
+            chromeOptions.addArguments("--headless");
+        }
+        this.driver = new ChromeDriver(chromeDriverService, chromeOptions);
+        this.url = url;
+        this.outputFileDirectory = outputFileDirectory;
+        this.outputFile = null;
+        this.persistToFile = true;
+        this.startTimeMillis = (new Date()).getTime();
+        this.eventHandler = eventHandler;
+        this.eventHandler.setDriver(driver);
+        setGraphFormats(Collections.singletonList("dot"));
+    }
+
+    // Crawls with a session borrowed from the pool, which gets the session back when the crawl is closed
+    ChromeExecution(String url, EventHandler eventHandler, String outputFileDirectory, SessionPool sessionPool) {
+        setDefaultChromeOptions();
+        this.sessionPool = sessionPool;
+        this.driver = sessionPool.borrow();
+        this.url = url;
+        this.outputFileDirectory = outputFileDirectory;
+        this.outputFile = null;
+        this.persistToFile = true;
+        this.startTimeMillis = (new Date()).getTime();
+        this.eventHandler = eventHandler;
+        this.eventHandler.setDriver(driver);
+        setGraphFormats(Collections.singletonList("dot"));
     }
 
     private void setDefaultChromeOptions() {
+        chromeOptions = createChromeOptions(null, false);
+        chromeDriverService = ChromeDriverService.createDefaultService();
+    }
+
+    static ChromeOptions createChromeOptions(String proxyUrl, boolean headless) {
         Map<String, Object> prefs = new HashMap<String, Object>();
         Map<String, Object> mobileEmulation = new HashMap<>();
         prefs.put("profile.default_content_setting_values.notifications", 2);
 //        mobileEmulation.put("deviceName", "Nexus 5");
-        chromeOptions = new ChromeOptions();
+        ChromeOptions chromeOptions = new ChromeOptions();
         chromeOptions.setExperimentalOption("prefs", prefs);
 //        chromeOptions.setExperimentalOption("mobileEmulation", mobileEmulation);
         chromeOptions.addArguments("--ignore-certificate-errors");
         chromeOptions.addArguments("--no-sandbox");
         chromeOptions.addArguments("--disable-popup-blocking");
-//        chromeOptions.addArguments("--headless");
-        chromeDriverService = ChromeDriverService.createDefaultService();
+        if (proxyUrl != null) {
+            chromeOptions.addArguments("--proxy-server="+proxyUrl);
+        }
+        if (headless) {
+            chromeOptions.addArguments("--headless");
+        }
+        return chromeOptions;
     }
 
-    protected void screenshot() {
+    public void setDiscoveryMode(int discoveryMode) {
+        this.discoveryMode = discoveryMode;
+    }
+
+    public void setSnapshotRestore(boolean snapshotRestore) {
+        this.snapshotRestore = snapshotRestore;
+    }
+
+    // Stops taking new parents from the queue once the crawl has run for timeBudgetMillis, 0 means no limit
+    public void setTimeBudget(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    protected boolean isOverBudget() {
+        return timeBudgetMillis > 0 && (new Date()).getTime() - startTimeMillis >= timeBudgetMillis;
+    }
+
+    // A parent whose probes were cut short by the budget is queued again without being recorded as processed, so a
+    // resumed crawl replays it and probes the candidates it did not get to
+    protected void requeueUnfinished(Event parentEvent, Queue<Event> eventQueue) {
+        System.out.println("Time budget exhausted while probing " + parentEvent.getEventType() + " " + parentEvent.getXpath());
+        eventQueue.add(parentEvent);
+    }
+
+    protected void printBudgetReport(Queue<Event> eventQueue) {
+        if (!eventQueue.isEmpty()) {
+            System.out.println("Time budget exhausted with " + eventQueue.size() + " events still queued");
+        }
+    }
+
+    public void setExplorationStrategy(ExplorationStrategy explorationStrategy) {
+        this.explorationStrategy = explorationStrategy;
+    }
+
+    public void setCoverageCurve(String fileName) throws IOException {
+        this.coverageCurve = new CoverageCurve(fileName, explorationStrategy.getName(), startTimeMillis);
+    }
+
+    public void setStateAbstraction(StateAbstraction stateAbstraction) {
+        this.stateAbstraction = stateAbstraction;
+    }
+
+    protected String hashChildState(ChromeDriver probeDriver) {
+        return stateAbstraction == null ? null : stateAbstraction.hashState(probeDriver);
+    }
+
+    // Records the state a triggered child leads to. Returns true when an earlier event already reached that state,
+    // in which case the child shares that event's state node and is not queued as a parent.
+    protected boolean reachesKnownState(Event childEvent, String stateHash) {
+        if (stateAbstraction == null || stateHash == null) {
+            return false;
+        }
+        Event stateEvent = stateAbstraction.visit(stateHash, childEvent);
+        if (stateEvent == null) {
+            return false;
+        }
+        childEvent.setStateEvent(stateEvent);
+        return true;
+    }
+
+    protected int getDistinctStateCount() {
+        return stateAbstraction != null ? stateAbstraction.getStateCount() : stateSignatures.size();
+    }
+
+    protected boolean measuresPages() {
+        return explorationStrategy.usesFeatures() || coverageCurve != null;
+    }
+
+    // Measures the parent state reached after replaying its chain, returning its element count or -1. When states are
+    // not hashed, the element count serves as the state signature counted by the coverage curve.
+    protected long measureParentState(Event parentEvent) {
+        if (!measuresPages()) {
+            return -1;
+        }
+        long[] measures = BrowserInteractions.measurePage(driver, parentEvent.getXpath());
+        if (measures == null) {
+            return -1;
+        }
+        stateSignatures.add(measures[0]);
+        return measures[0];
+    }
+
+    // Measures the page a triggered child left behind, only when the strategy ranks parents by it
+    protected long[] measureChild(ChromeDriver probeDriver, Event childEvent) {
+        return explorationStrategy.usesFeatures() ? BrowserInteractions.measurePage(probeDriver, childEvent.getXpath()) : null;
+    }
+
+    // Passes the page change a triggered child caused to the strategy, before the child is queued
+    protected void observeChild(Event childEvent, long[] childMeasures, long parentElementCount) {
+        if (childMeasures != null) {
+            long domDelta = parentElementCount < 0 ? 0 : childMeasures[0] - parentElementCount;
+            explorationStrategy.observe(childEvent, childMeasures[0], domDelta, childMeasures[1] == 1);
+        }
+    }
+
+    public void setIncrementalCrawl(IncrementalCrawl incrementalCrawl) {
+        this.incrementalCrawl = incrementalCrawl;
+    }
+
+    // Takes the unchanged children of a carried parent over from the previous run. Returns true when that left nothing
+    // to probe, in which case the parent was completed without replaying it.
+    protected boolean carryForward(Event parentEvent, LinkedList<Event> eventList, Queue<Event> eventQueue) {
+        if (incrementalCrawl == null || !incrementalCrawl.plan(parentEvent, eventList)) {
+            return false;
+        }
+        List<Event> carriedChildren = incrementalCrawl.getCarriedChildren();
+        for (Event childEvent: carriedChildren) {
+            boolean queued = stateAbstraction == null || !incrementalCrawl.reachedKnownState(childEvent);
+            parentEvent.addChild(childEvent);
+            recordChild(parentEvent, childEvent, queued);
+            if (queued) {
+                eventQueue.add(childEvent);
+            }
+        }
+        Set<Event> carriedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        carriedSet.addAll(carriedChildren);
+        eventList.removeIf(carriedSet::contains);
+        if (incrementalCrawl.hasProbeCandidates()) {
+            return false;
+        }
         this.screenshotCount +=1;
-        BrowserInteractions.screenshot(driver, outputFileDirectory + "/" + this.screenshotCount);
+        incrementalCrawl.copyScreenshot(parentEvent, outputFileDirectory + "/" + this.screenshotCount);
+        writeToTraceFile(parentEvent);
+        recordProcessed(parentEvent);
+        return true;
+    }
+
+    public void setProbePlanner(ProbePlanner probePlanner) {
+        this.probePlanner = probePlanner;
+    }
+
+    public void setLayoutPrefilter(LayoutPrefilter layoutPrefilter) {
+        this.layoutPrefilter = layoutPrefilter;
+    }
+
+    protected List<Event> planCandidates(Event parentEvent, List<Event> eventList) {
+        if (incrementalCrawl != null) {
+            eventList = incrementalCrawl.getProbeCandidates(parentEvent, eventList);
+        }
+        List<Event> candidates = probePlanner == null ? new ArrayList<>(eventList) : probePlanner.plan(driver, parentEvent, eventList);
+        return layoutPrefilter == null ? candidates : layoutPrefilter.plan(driver, candidates);
+    }
+
+    protected void printPlannerReport() {
+        if (probePlanner != null) {
+            probePlanner.printReport();
+        }
+        if (layoutPrefilter != null) {
+            layoutPrefilter.printReport();
+        }
+    }
+
+    // Replaces the graph outputs, each of dot, graphml, jsonl and binary is streamed to its own file in the output directory
+    public void setGraphFormats(List<String> graphFormats) {
+        graphWriters = new ArrayList<>();
+        for (String graphFormat: graphFormats) {
+            if (graphFormat.equals("dot")) {
+                graphWriters.add(new DOTGraphWriter(outputFileDirectory));
+            } else if (graphFormat.equals("graphml")) {
+                graphWriters.add(new GraphMLGraphWriter(outputFileDirectory));
+            } else if (graphFormat.equals("jsonl")) {
+                graphWriters.add(new JsonLinesGraphWriter(outputFileDirectory));
+            } else if (graphFormat.equals("binary")) {
+                graphWriters.add(new BinaryAdjacencyGraphWriter(outputFileDirectory));
+            } else {
+                System.out.println("Unknown graph format, " + graphFormat);
+            }
+        }
+    }
+
+    // binary writes the indexed trace (trace plus trace.idx), jsonl the older format with one full chain per line
+    public void setTraceFormat(String traceFormat) {
+        this.traceFormat = traceFormat;
     }
 
-    private void writeToTraceFile(String eventString) {
+    public void setCheckpoint(String checkpointFileName, long syncIntervalMillis, boolean resume) {
+        this.checkpoint = new CrawlCheckpoint(checkpointFileName, syncIntervalMillis);
+        this.resume = resume;
+    }
+
+    // Discovers events on the opened page, or rebuilds the crawl from the checkpoint when resuming
+    protected CrawlState initializeCrawlState() throws InteractionBotException {
         try {
-            if (traceFileWriter == null) {
-                traceFileWriter = new FileWriter(outputFileDirectory + "/" + "trace");
+            if (checkpoint != null && resume && checkpoint.exists()) {
+                CrawlState state = checkpoint.resume();
+                List<Event> processedEvents = state.getProcessedEvents();
+                for (Event processedEvent: processedEvents) {
+                    writeToTraceFile(processedEvent);
+                }
+                writeGraph(state.getBaseEvent());
+                screenshotCount = processedEvents.size();
+                processedCount = processedEvents.size();
+                explorationStrategy.addAll(state.getEventQueue());
+                if (incrementalCrawl != null) {
+                    incrementalCrawl.fingerprint(driver, state.getBaseEvent(), state.getEventList());
+                }
+                return new CrawlState(state.getBaseEvent(), state.getEventList(), explorationStrategy, processedEvents);
             }
-            traceFileWriter.write(eventString+"\n");
-            traceFileWriter.flush();
 
+            HTMLDocumentUtil htmlDocumentUtil = new HTMLDocumentUtil(driver, discoveryMode);
+            LinkedList<Event> eventList = htmlDocumentUtil.getEventList();
+            System.out.println("No of events: "+eventList.size());
+            Event baseEvent = new Event("baseEvent", "/html/body");
+            if (stateAbstraction != null) {
+                String baseStateHash = stateAbstraction.hashState(driver);
+                if (baseStateHash != null) {
+                    stateAbstraction.visit(baseStateHash, baseEvent);
+                }
+            }
+            if (incrementalCrawl != null) {
+                incrementalCrawl.fingerprint(driver, baseEvent, eventList);
+            }
+            Queue<Event> eventQueue = explorationStrategy;
+            eventQueue.add(baseEvent);
+            if (checkpoint != null) {
+                checkpoint.start(url, baseEvent, eventList);
+            }
+            for (GraphWriter graphWriter: graphWriters) {
+                graphWriter.addNode(baseEvent);
+            }
+            return new CrawlState(baseEvent, eventList, eventQueue, new ArrayList<>());
         } catch (IOException ex) {
-            System.out.println("Error writing to trace file");
+            throw new InteractionBotException(InteractionBotException.UNSPECIFIED_EXCEPTION, ex.getMessage());
+        }
+    }
+
+    // A child that reached a known state is not queued as a parent
+    protected void recordChild(Event parentEvent, Event childEvent) {
+        recordChild(parentEvent, childEvent, childEvent.getStateEvent() == null);
+    }
 
+    protected void recordChild(Event parentEvent, Event childEvent, boolean queued) {
+        discoveredCount++;
+        if (checkpoint != null) {
+            checkpoint.recordChild(parentEvent, childEvent, queued);
+        }
+        // A child that revisited a state points at that state's node, which turns the tree into a DAG
+        Event targetEvent = childEvent.getStateEvent() != null ? childEvent.getStateEvent() : childEvent;
+        for (GraphWriter graphWriter: graphWriters) {
+            graphWriter.addEdge(parentEvent, targetEvent);
         }
     }
 
-    protected void closeTools() {
-        driver.close();
-        if (traceFileWriter != null) {
-            try {
-                traceFileWriter.close();
-            } catch(IOException ignored) {}
+    protected void recordProcessed(Event parentEvent) {
+        if (checkpoint != null) {
+            checkpoint.recordProcessed(parentEvent);
+        }
+        explorationStrategy.parentProcessed(parentEvent);
+        if (incrementalCrawl != null) {
+            incrementalCrawl.recordProcessed(parentEvent, screenshotCount);
+        }
+        processedCount++;
+        if (coverageCurve != null) {
+            coverageCurve.record(processedCount, discoveredCount, getDistinctStateCount(), explorationStrategy.size());
         }
-        dotFileBuilder.close();
     }
 
-    public Event execute() throws InteractionBotException {
-        this.url = BrowserInteractions.openPage(driver, url);
-        HTMLDocumentUtil htmlDocumentUtil = new HTMLDocumentUtil(driver);
-        LinkedList<Event> eventList = htmlDocumentUtil.getEventList();
-        System.out.println("No of events: "+eventList.size());
-        Event baseEvent = new Event("baseEvent", "/html/body");
-        Queue<Event> eventQueue = new LinkedList<>();
-        eventQueue.add(baseEvent);
+    // Writes the already built tree below event, used when a resumed crawl starts its graph files over
+    private void writeGraph(Event event) {
+        for (GraphWriter graphWriter: graphWriters) {
+            graphWriter.addNode(event);
+        }
+        for (Event childEvent: event.getChildren()) {
+            Event targetEvent = childEvent.getStateEvent() != null ? childEvent.getStateEvent() : childEvent;
+            for (GraphWriter graphWriter: graphWriters) {
+                graphWriter.addEdge(event, targetEvent);
+            }
+            if (targetEvent == childEvent) {
+                writeGraph(childEvent);
+            }
+        }
+    }
 
-        while (!eventQueue.isEmpty()) {
-            // Check if this is a leaf for dot file purposes
-            boolean hasChild = false;
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        responseCache.attach(driver);
+    }
 
+    // Returns the page to the state after parentEvent, cheaply from the snapshot when possible
+    protected void restoreParentState(Event parentEvent, PageStateSnapshot parentSnapshot) throws InteractionBotException {
+        long start = restoreTimer.start();
+        try {
+            restoreParentStateUntimed(parentEvent, parentSnapshot);
+        } finally {
+            restoreTimer.stop(start);
+        }
+    }
+
+    private void restoreParentStateUntimed(Event parentEvent, PageStateSnapshot parentSnapshot) throws InteractionBotException {
+        if (parentSnapshot == null || !parentSnapshot.revert(driver)) {
+            if (snapshotRestore) {
+                fallbackReloadCount++;
+            }
             BrowserInteractions.openPage(driver, url);
-            BrowserInteractions.scrollToTop(driver);
-            Event parentEvent = eventQueue.poll();
+            replayEventChain(parentEvent);
+            return;
+        }
+        replayEventChain(parentEvent);
+        if (parentSnapshot.matches(driver)) {
+            verifiedRestoreCount++;
+        } else {
+            divergedRestoreCount++;
+        }
+    }
 
-            // Trigger all predecessors and then trigger the element
-            for (Event predecessor: parentEvent.getPredecessorEvents()) {
+    // Triggers all predecessors of event and then event itself on the driver
+    protected void replayEventChain(Event event) throws InteractionBotException {
+        long start = replayTimer.start();
+        try {
+            for (Event predecessor: event.getPredecessorEvents()) {
                 eventHandler.triggerEvent(predecessor);
             }
-            eventHandler.triggerEvent(parentEvent);
+            eventHandler.triggerEvent(event);
+        } finally {
+            replayTimer.stop(start);
+        }
+    }
+
+    public void setProbeLog(ProbeLog probeLog) {
+        this.probeLog = probeLog;
+    }
 
-            screenshot();
-            writeToTraceFile(parentEvent.serializeFullEventTrace().toJSONString());
+    // Times one probe under its outcome, either triggered or the failure type, and logs it when a probe log is set
+    static void recordProbe(ProbeLog probeLog, Event parentEvent, Event candidateEvent, String outcome, long triggerNanos) {
+        Metrics.timer("probe", "outcome", outcome).record(triggerNanos);
+        if (probeLog != null) {
+            probeLog.record(parentEvent, candidateEvent, outcome, triggerNanos);
+        }
+    }
 
-            // Do proper check to see if the url has change, consider # changes in url
-            if (!driver.getCurrentUrl().equals(url)) {
-                BrowserInteractions.openPage(driver, url);
-                continue;
+    protected void printRestoreReport() {
+        if (snapshotRestore) {
+            System.out.println("State restores: " + verifiedRestoreCount + " verified, " + divergedRestoreCount + " diverged from the parent state, "
+                    + fallbackReloadCount + " by plain reload and replay");
+        }
+        if (stateAbstraction != null) {
+            stateAbstraction.printReport();
+        }
+    }
+
+    public void setScreenshotPipeline(ScreenshotPipeline screenshotPipeline) {
+        this.screenshotPipeline = screenshotPipeline;
+    }
+
+    protected void screenshot() {
+        this.screenshotCount +=1;
+        takeScreenshot(driver, outputFileDirectory + "/" + this.screenshotCount);
+    }
+
+    protected void takeScreenshot(ChromeDriver screenshotDriver, String fileName) {
+        if (screenshotPipeline == null) {
+            BrowserInteractions.screenshot(screenshotDriver, fileName);
+            return;
+        }
+        BrowserInteractions.waitUntilReady(screenshotDriver, ReadinessStrategy.SCREENSHOT);
+        screenshotPipeline.screenshot(screenshotDriver, fileName);
+    }
+
+    protected synchronized void writeToTraceFile(Event event) {
+        try {
+            if (traceFormat.equals("jsonl")) {
+                if (traceFileWriter == null) {
+                    traceFileWriter = new FileWriter(outputFileDirectory + "/" + "trace");
+                }
+                traceFileWriter.write(event.serializeFullEventTraceString()+"\n");
+                traceFileWriter.flush();
+            } else {
+                if (traceWriter == null) {
+                    traceWriter = new TraceWriter(outputFileDirectory + "/" + "trace", 64, 1000);
+                }
+                traceWriter.append(event);
             }
+        } catch (IOException ex) {
+            System.out.println("Error writing to trace file");
 
-            int i = eventList.size()-1;
-            while (i >= 0) {
-                Event event = eventList.get(i);
-                System.out.println(event.getEventType()+" "+event.getXpath());
-                try {
-                    eventHandler.triggerEvent(event);
-                    parentEvent.addChild(event);
-                    eventQueue.add(event);
-                    eventList.remove(i);
-                    hasChild = true;
-                    BrowserInteractions.openPage(driver, url);
-                    for (Event predecessor: parentEvent.getPredecessorEvents()) {
-                        eventHandler.triggerEvent(predecessor);
-                    }
-                    eventHandler.triggerEvent(parentEvent);
-                } catch (InteractionBotException ex) {
-                    if (ex.getExceptionType() == InteractionBotException.UNREACHEABLE_BROWSER) {
-                        throw ex;
-                    }
-
-                    if (!driver.getCurrentUrl().equals(url)) {
-                        BrowserInteractions.openPage(driver, url);
-                        for (Event predecessor: parentEvent.getPredecessorEvents()) {
-                            eventHandler.triggerEvent(predecessor);
-                        }
-                        eventHandler.triggerEvent(parentEvent);
-                    }
+        }
+    }
+
+    // Takes the parent's screenshot and writes its trace record. A parent retried after a hang overwrites the
+    // screenshot it already has, so screenshot numbers keep matching trace records.
+    protected void recordParent(Event parentEvent) {
+        Integer hungScreenshotNumber = hungParents.get(parentEvent);
+        if (hungScreenshotNumber != null && hungScreenshotNumber > 0) {
+            takeScreenshot(driver, outputFileDirectory + "/" + hungScreenshotNumber);
+            return;
+        }
+        screenshot();
+        writeToTraceFile(parentEvent);
+        parentScreenshotNumber = screenshotCount;
+    }
+
+    // Crawls one parent, relaunching the browser when it hangs. The queue, the event list and the tree are all kept
+    // in memory, so the crawl carries on from the same point: a parent that hung is queued again once and then given
+    // up on.
+    protected void crawlParent(Event parentEvent, LinkedList<Event> eventList, Queue<Event> eventQueue) throws InteractionBotException {
+        parentScreenshotNumber = 0;
+        try {
+            processParent(parentEvent, eventList, eventQueue);
+            return;
+        } catch (DeadlineExceededException ex) {
+            System.out.println(ex.getMessage());
+        } catch (InteractionBotException ex) {
+            if (ex.getExceptionType() != InteractionBotException.DEADLINE_EXCEEDED) {
+                throw ex;
+            }
+        }
+        System.out.println("Browser hung on " + parentEvent.getEventType() + " " + parentEvent.getXpath());
+        replaceDriver();
+        if (!hungParents.containsKey(parentEvent)) {
+            hungParents.put(parentEvent, parentScreenshotNumber);
+            eventQueue.add(parentEvent);
+        } else {
+            System.out.println("Giving up on it after it hung twice");
+            recordProcessed(parentEvent);
+        }
+    }
+
+    // A candidate whose trigger hangs the browser would hang it again after every later parent, so it is dropped
+    protected void dropHungCandidate(Event event, List<Event> eventList) {
+        System.out.println("Dropping " + event.getEventType() + " " + event.getXpath() + " after it hung the browser");
+        eventList.remove(event);
+        hungCandidateCount++;
+    }
+
+    // Replaces the hung browser of the crawl with a fresh one
+    protected void replaceDriver() {
+        driver = relaunch(driver);
+        eventHandler.setDriver(driver);
+    }
+
+    // Quits a hung browser and launches another with the same options. Quitting can hang as well, so it is bounded by
+    // the operation deadline and the chromedriver process is stopped if the browser does not go away.
+    protected synchronized ChromeDriver relaunch(ChromeDriver hungDriver) {
+        relaunchCount++;
+        Metrics.counter("browser_relaunches", "reason", "deadline").increment();
+        ChromeDriver freshDriver;
+        if (sessionPool != null) {
+            freshDriver = sessionPool.relaunch(hungDriver);
+        } else {
+            try {
+                DeadlineExecutor.call("quit", () -> {
+                    hungDriver.quit();
+                    return null;
+                });
+            } catch (WebDriverException | DeadlineExceededException ex) {
+                if (hungDriver == driver) {
+                    chromeDriverService.stop();
                 }
-                i--;
             }
-            // if it is a leaf, add path to dot file
-            if (!hasChild) {
-                dotFileBuilder.addNode(parentEvent.generateFullDOTRepresentation());
+            ChromeDriverService freshService = ChromeDriverService.createDefaultService();
+            freshDriver = new ChromeDriver(freshService, chromeOptions);
+            if (hungDriver == driver) {
+                chromeDriverService = freshService;
+            }
+        }
+        if (responseCache != null) {
+            responseCache.attach(freshDriver);
+        }
+        return freshDriver;
+    }
+
+    protected void printDeadlineReport() {
+        DeadlineExecutor.printReport();
+        if (relaunchCount > 0 || hungCandidateCount > 0) {
+            System.out.println("Hung browsers relaunched: " + relaunchCount + ", candidates dropped after hanging: " + hungCandidateCount);
+        }
+    }
+
+    protected void closeTools() {
+        if (sessionPool != null) {
+            sessionPool.release(driver);
+        } else {
+            driver.quit();
+        }
+        if (traceFileWriter != null) {
+            try {
+                traceFileWriter.close();
+            } catch(IOException ignored) {}
+        }
+        if (traceWriter != null) {
+            traceWriter.close();
+        }
+        for (GraphWriter graphWriter: graphWriters) {
+            graphWriter.close();
+        }
+        if (screenshotPipeline != null) {
+            screenshotPipeline.close();
+        }
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
+        if (probeLog != null) {
+            probeLog.close();
+        }
+        if (coverageCurve != null) {
+            coverageCurve.close();
+        }
+        if (incrementalCrawl != null) {
+            incrementalCrawl.close(url, outputFileDirectory);
+        }
+        if (responseCache != null) {
+            responseCache.printReport();
+            responseCache.close();
+        }
+    }
+
+    public Event execute() throws InteractionBotException {
+        this.url = BrowserInteractions.openPage(driver, url);
+        CrawlState state = initializeCrawlState();
+        LinkedList<Event> eventList = state.getEventList();
+        Event baseEvent = state.getBaseEvent();
+        Queue<Event> eventQueue = state.getEventQueue();
+
+        while (!eventQueue.isEmpty() && !isOverBudget()) {
+            Event parentEvent = eventQueue.poll();
+            if (carryForward(parentEvent, eventList, eventQueue)) {
+                continue;
             }
+            crawlParent(parentEvent, eventList, eventQueue);
         }
 
         for (Event i: eventList) {
             System.out.println(i.getEventType()+ " " + i.getXpath());
         }
         System.out.println("Complete");
+        printBudgetReport(eventQueue);
+        BrowserInteractions.getReadinessReport().print();
+        printRestoreReport();
+        printPlannerReport();
+        printDeadlineReport();
         closeTools();
         return baseEvent;
     }
+
+    // Probes every candidate from the state after parentEvent
+    protected void processParent(Event parentEvent, LinkedList<Event> eventList, Queue<Event> eventQueue) throws InteractionBotException {
+        BrowserInteractions.openPage(driver, url);
+        BrowserInteractions.scrollToTop(driver);
+        PageStateSnapshot parentSnapshot = snapshotRestore ? PageStateSnapshot.capture(driver) : null;
+        if (probePlanner != null) {
+            probePlanner.startRecording(driver);
+        }
+
+        // Trigger all predecessors and then trigger the element
+        replayEventChain(parentEvent);
+        long parentElementCount = measureParentState(parentEvent);
+
+        recordParent(parentEvent);
+
+        // Do proper check to see if the url has change, consider # changes in url
+        if (!BrowserInteractions.getCurrentUrl(driver).equals(url)) {
+            recordProcessed(parentEvent);
+            BrowserInteractions.openPage(driver, url);
+            return;
+        }
+        if (parentSnapshot != null) {
+            parentSnapshot.recordChainState(driver);
+        }
+
+        List<Event> candidates = planCandidates(parentEvent, eventList);
+        int i = candidates.size()-1;
+        while (i >= 0) {
+            if (isOverBudget()) {
+                requeueUnfinished(parentEvent, eventQueue);
+                return;
+            }
+            Event event = candidates.get(i);
+            System.out.println(event.getEventType()+" "+event.getXpath());
+            long probeStart = System.nanoTime();
+            try {
+                eventHandler.triggerEvent(event);
+                recordProbe(probeLog, parentEvent, event, "triggered", System.nanoTime() - probeStart);
+                observeChild(event, measureChild(driver, event), parentElementCount);
+                boolean knownState = reachesKnownState(event, hashChildState(driver));
+                parentEvent.addChild(event);
+                recordChild(parentEvent, event);
+                if (!knownState) {
+                    eventQueue.add(event);
+                }
+                eventList.remove(event);
+                restoreParentState(parentEvent, parentSnapshot);
+            } catch (InteractionBotException ex) {
+                recordProbe(probeLog, parentEvent, event, InteractionBotException.getTypeName(ex.getExceptionType()), System.nanoTime() - probeStart);
+                if (ex.getExceptionType() == InteractionBotException.UNREACHEABLE_BROWSER) {
+                    throw ex;
+                }
+
+                if (ex.getExceptionType() == InteractionBotException.DEADLINE_EXCEEDED) {
+                    dropHungCandidate(event, eventList);
+                    replaceDriver();
+                    restoreParentState(parentEvent, null);
+                } else if (!BrowserInteractions.getCurrentUrl(driver).equals(url)) {
+                    BrowserInteractions.openPage(driver, url);
+                    replayEventChain(parentEvent);
+                }
+            }
+            i--;
+        }
+        recordProcessed(parentEvent);
+    }
 }
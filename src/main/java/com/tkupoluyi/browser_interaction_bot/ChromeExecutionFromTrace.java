@@ -2,18 +2,28 @@ package com.tkupoluyi.browser_interaction_bot;
 
 import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
 import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class ChromeExecutionFromTrace extends ChromeExecution {
     String traceFileName;
+    boolean trieReplay = false;
+    int replayWorkerCount = 1;
+    Supplier<EventHandler> eventHandlerFactory;
+    int splitDepth;
+    int firstRecord = 1;
+    int lastRecord = 0;
 
     ChromeExecutionFromTrace(String url, EventHandler eventHandler, String traceFileName) {
         super(url, eventHandler);
@@ -31,21 +41,40 @@ public class ChromeExecutionFromTrace extends ChromeExecution {
         this.traceFileName = traceFileName;
     }
 
+    ChromeExecutionFromTrace(String url, EventHandler eventHandler, String outputFileDirectory, SessionPool sessionPool, String traceFileName) {
+        super(url, eventHandler, outputFileDirectory, sessionPool);
+        this.traceFileName = traceFileName;
+    }
+
+    // Replays the trace as a prefix trie so shared predecessor chains are triggered once, spread over workerCount drivers
+    public void setTrieReplay(int workerCount, Supplier<EventHandler> eventHandlerFactory) {
+        this.trieReplay = true;
+        this.replayWorkerCount = Math.max(1, workerCount);
+        this.eventHandlerFactory = eventHandlerFactory;
+    }
+
+    // Replays only the records from firstRecord to lastRecord, counting from 1 like the screenshots, 0 means no bound
+    public void setReplayRange(int firstRecord, int lastRecord) {
+        this.firstRecord = Math.max(1, firstRecord);
+        this.lastRecord = lastRecord;
+    }
+
     public Event execute() {
-        try {
-            FileReader fileReader = new FileReader(traceFileName);
-            BufferedReader br = new BufferedReader(fileReader);
-            String line;
-            JSONParser parser = new JSONParser();
-            while((line=br.readLine())!=null) {
+        if (trieReplay) {
+            executeTrie();
+            return null;
+        }
+        try (TraceReader traceReader = new TraceReader(traceFileName)) {
+            if (firstRecord > 1) {
+                traceReader.seek(firstRecord - 1);
+            }
+            this.screenshotCount = firstRecord - 1;
+            List<Event> chain;
+            while ((lastRecord == 0 || screenshotCount < lastRecord) && (chain = traceReader.nextChain()) != null) {
                 this.url = BrowserInteractions.openPage(driver, url);
                 BrowserInteractions.scrollToTop(driver);
-                JSONArray arr = (JSONArray) parser.parse(line);
-                int i;
-                for (i = 0; i < arr.size(); i++) {
-                    JSONObject json = (JSONObject) arr.get(i);
-                    System.out.println((String) json.get("event") + " " + (String) json.get("xpath"));
-                    Event event = new Event((String) json.get("event"), (String) json.get("xpath"));
+                for (Event event: chain) {
+                    System.out.println(event.getEventType() + " " + event.getXpath());
                     try {
                         eventHandler.triggerEvent(event);
                     } catch (InteractionBotException ex) {System.out.println(ex.getExceptionType()); }
@@ -56,11 +85,168 @@ public class ChromeExecutionFromTrace extends ChromeExecution {
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         } catch (IOException e) {
-
-        } catch (ParseException e) {
             e.printStackTrace();
         }
+        BrowserInteractions.getReadinessReport().print();
         closeTools();
         return null;
     }
+
+    private TraceTrieNode parseTraceTrie() throws IOException {
+        TraceTrieNode root = new TraceTrieNode(null, null);
+        try (TraceReader traceReader = new TraceReader(traceFileName)) {
+            if (firstRecord > 1) {
+                traceReader.seek(firstRecord - 1);
+            }
+            int screenshotNumber = firstRecord - 1;
+            List<Event> chain;
+            while ((lastRecord == 0 || screenshotNumber < lastRecord) && (chain = traceReader.nextChain()) != null) {
+                TraceTrieNode node = root;
+                for (Event event: chain) {
+                    node = node.getOrAddChild(event.getEventType(), event.getXpath());
+                }
+                screenshotNumber += 1;
+                node.addScreenshotNumber(screenshotNumber);
+            }
+            this.screenshotCount = screenshotNumber;
+        }
+        return root;
+    }
+
+    private void executeTrie() {
+        List<ChromeDriver> extraDrivers = new ArrayList<>();
+        List<ChromeDriver> launchedDrivers = new ArrayList<>();
+        ExecutorService replayExecutor = Executors.newFixedThreadPool(replayWorkerCount);
+        try {
+            TraceTrieNode root = parseTraceTrie();
+            this.url = BrowserInteractions.openPage(driver, url);
+
+            Queue<ChromeDriver> idleDrivers = new LinkedList<>();
+            Queue<EventHandler> idleEventHandlers = new LinkedList<>();
+            idleDrivers.add(driver);
+            idleEventHandlers.add(eventHandler);
+            for (int i = 1; i < replayWorkerCount; i++) {
+                ChromeDriver workerDriver = sessionPool != null ? sessionPool.tryBorrow() : null;
+                if (workerDriver == null) {
+                    workerDriver = new ChromeDriver(ChromeDriverService.createDefaultService(), chromeOptions);
+                    launchedDrivers.add(workerDriver);
+                }
+                if (responseCache != null) {
+                    responseCache.attach(workerDriver);
+                }
+                EventHandler workerEventHandler = eventHandlerFactory.get();
+                workerEventHandler.setDriver(workerDriver);
+                extraDrivers.add(workerDriver);
+                idleDrivers.add(workerDriver);
+                idleEventHandlers.add(workerEventHandler);
+            }
+
+            List<Future<?>> replays = new ArrayList<>();
+            for (TraceTrieNode task: splitIntoTasks(root)) {
+                boolean descend = task.getDepth() == splitDepth;
+                replays.add(replayExecutor.submit(() -> {
+                    ChromeDriver workerDriver;
+                    EventHandler workerEventHandler;
+                    synchronized (idleDrivers) {
+                        workerDriver = idleDrivers.poll();
+                        workerEventHandler = idleEventHandlers.poll();
+                    }
+                    try {
+                        PageStateSnapshot loadSnapshot = replayFromScratch(workerDriver, workerEventHandler, task);
+                        visit(workerDriver, workerEventHandler, task, descend, loadSnapshot);
+                    } finally {
+                        synchronized (idleDrivers) {
+                            idleDrivers.add(workerDriver);
+                            idleEventHandlers.add(workerEventHandler);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> replay: replays) {
+                replay.get();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            replayExecutor.shutdownNow();
+            for (ChromeDriver extraDriver: extraDrivers) {
+                if (launchedDrivers.contains(extraDriver)) {
+                    extraDriver.quit();
+                } else {
+                    sessionPool.release(extraDriver);
+                }
+            }
+        }
+        BrowserInteractions.getReadinessReport().print();
+        closeTools();
+    }
+
+    // Nodes above the split depth are replayed on their own, nodes at it are replayed with their whole subtree.
+    // The split is the shallowest depth with enough subtrees to keep every worker busy.
+    private List<TraceTrieNode> splitIntoTasks(TraceTrieNode root) {
+        List<TraceTrieNode> tasks = new ArrayList<>();
+        List<TraceTrieNode> level = new ArrayList<>();
+        level.add(root);
+        splitDepth = 0;
+        while (replayWorkerCount > 1 && level.size() < replayWorkerCount * 4) {
+            List<TraceTrieNode> nextLevel = new ArrayList<>();
+            for (TraceTrieNode node: level) {
+                nextLevel.addAll(node.getChildren());
+            }
+            if (nextLevel.isEmpty()) {
+                break;
+            }
+            tasks.addAll(level);
+            level = nextLevel;
+            splitDepth++;
+        }
+        tasks.addAll(level);
+        return tasks;
+    }
+
+    // Loads the page and replays the path to node. Returns the state of the loaded page when restores are on, which
+    // the whole subtree of node can revert to before replaying a path.
+    private PageStateSnapshot replayFromScratch(ChromeDriver workerDriver, EventHandler workerEventHandler, TraceTrieNode node) {
+        BrowserInteractions.openPage(workerDriver, url);
+        BrowserInteractions.scrollToTop(workerDriver);
+        PageStateSnapshot loadSnapshot = snapshotRestore ? PageStateSnapshot.capture(workerDriver) : null;
+        for (Event event: node.getPath()) {
+            trigger(workerEventHandler, event);
+        }
+        return loadSnapshot;
+    }
+
+    // Screenshots the node, then branches into each child from the node's state, restoring it between siblings
+    private void visit(ChromeDriver workerDriver, EventHandler workerEventHandler, TraceTrieNode node, boolean descend, PageStateSnapshot loadSnapshot) {
+        for (int screenshotNumber: node.getScreenshotNumbers()) {
+            takeScreenshot(workerDriver, outputFileDirectory + "/" + screenshotNumber);
+        }
+        if (!descend || node.getChildren().isEmpty()) {
+            return;
+        }
+        boolean firstChild = true;
+        for (TraceTrieNode child: node.getChildren()) {
+            if (!firstChild) {
+                if (loadSnapshot != null && loadSnapshot.revert(workerDriver)) {
+                    for (Event event: node.getPath()) {
+                        trigger(workerEventHandler, event);
+                    }
+                } else {
+                    loadSnapshot = replayFromScratch(workerDriver, workerEventHandler, node);
+                }
+            }
+            firstChild = false;
+            trigger(workerEventHandler, child.getEvent());
+            visit(workerDriver, workerEventHandler, child, true, loadSnapshot);
+        }
+    }
+
+    private void trigger(EventHandler workerEventHandler, Event event) {
+        System.out.println(event.getEventType() + " " + event.getXpath());
+        try {
+            workerEventHandler.triggerEvent(event);
+        } catch (InteractionBotException ex) {
+            System.out.println(ex.getExceptionType());
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Append-only binary log of crawl progress. Discovered events are written once, then every child edge and every
+// completed parent is appended as it happens (after the child itself when it was discovered late), so the queue, the
+// remaining event list and the Event tree can be rebuilt after a crash by replaying the log. A torn record at the end
+// of the file is dropped on resume. A child that reached a known state is followed by a record of that state's event
+// (or of no event, when only the previous run knew the state), so it is neither queued again nor drawn as a node.
+public class CrawlCheckpoint {
+    private static final int MAGIC = 0x42494244;
+    private static final byte DISCOVERED = 'D';
+    private static final byte CHILD = 'C';
+    private static final byte PROCESSED = 'P';
+    private static final byte NOT_QUEUED = 'N';
+
+    private String checkpointFileName;
+    private long syncIntervalMillis;
+    private long lastSyncMillis;
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream output;
+    private Map<Event, Integer> eventIds;
+
+    CrawlCheckpoint(String checkpointFileName, long syncIntervalMillis) {
+        this.checkpointFileName = checkpointFileName;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.eventIds = new IdentityHashMap<>();
+    }
+
+    public boolean exists() {
+        return Files.exists(Paths.get(checkpointFileName));
+    }
+
+    public void start(String url, Event baseEvent, List<Event> eventList) throws IOException {
+        open(false, -1);
+        output.writeInt(MAGIC);
+        writeString(url);
+        writeDiscovered(baseEvent);
+        for (Event event: eventList) {
+            writeDiscovered(event);
+        }
+        sync();
+    }
+
+    public CrawlState resume() throws IOException {
+        byte[] log = Files.readAllBytes(Paths.get(checkpointFileName));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(log));
+        List<Event> events = new ArrayList<>();
+        List<Event> enqueuedEvents = new ArrayList<>();
+        Set<Event> claimedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Event> notQueuedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Event> processedEvents = new ArrayList<>();
+        long validLength = 0;
+
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a crawl checkpoint, " + checkpointFileName);
+            }
+            readString(input);
+            validLength = log.length - input.available();
+            while (input.available() > 0) {
+                byte recordType = input.readByte();
+                if (recordType == DISCOVERED) {
+                    int id = input.readInt();
+                    Event event = new Event(readString(input), readString(input));
+                    events.add(event);
+                    eventIds.put(event, id);
+                    if (id == 0) {
+                        enqueuedEvents.add(event);
+                    }
+                } else if (recordType == CHILD) {
+                    Event parent = events.get(input.readInt());
+                    Event child = events.get(input.readInt());
+                    parent.addChild(child);
+                    enqueuedEvents.add(child);
+                    claimedEvents.add(child);
+                } else if (recordType == NOT_QUEUED) {
+                    Event child = events.get(input.readInt());
+                    int stateId = input.readInt();
+                    if (stateId >= 0) {
+                        child.setStateEvent(events.get(stateId));
+                    }
+                    notQueuedEvents.add(child);
+                } else if (recordType == PROCESSED) {
+                    processedEvents.add(events.get(input.readInt()));
+                } else {
+                    break;
+                }
+                validLength = log.length - input.available();
+            }
+        } catch (EOFException ignored) {
+            // The last record was only partly written
+        }
+        if (events.isEmpty()) {
+            throw new IOException("Checkpoint has no discovered events, " + checkpointFileName);
+        }
+
+        LinkedList<Event> eventList = new LinkedList<>();
+        for (Event event: events.subList(1, events.size())) {
+            if (!claimedEvents.contains(event)) {
+                eventList.add(event);
+            }
+        }
+        // Strategies other than bfs process parents out of discovery order, so the queue is whatever was not processed
+        Set<Event> processedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        processedSet.addAll(processedEvents);
+        Queue<Event> eventQueue = new LinkedList<>();
+        for (Event event: enqueuedEvents) {
+            if (!processedSet.contains(event) && !notQueuedEvents.contains(event)) {
+                eventQueue.add(event);
+            }
+        }
+        open(true, validLength);
+        System.out.println("Resumed crawl: " + processedEvents.size() + " events processed, " + eventQueue.size() + " queued, " + eventList.size() + " unclaimed");
+        return new CrawlState(events.get(0), eventList, eventQueue, processedEvents);
+    }
+
+    public void recordChild(Event parentEvent, Event childEvent, boolean queued) {
+        try {
+            // Events on elements added after the load were not part of the discovered list
+            if (!eventIds.containsKey(childEvent)) {
+                writeDiscovered(childEvent);
+            }
+            output.writeByte(CHILD);
+            output.writeInt(eventIds.get(parentEvent));
+            output.writeInt(eventIds.get(childEvent));
+            if (!queued) {
+                output.writeByte(NOT_QUEUED);
+                output.writeInt(eventIds.get(childEvent));
+                output.writeInt(childEvent.getStateEvent() != null ? eventIds.get(childEvent.getStateEvent()) : -1);
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing to checkpoint");
+        }
+    }
+
+    public void recordProcessed(Event parentEvent) {
+        try {
+            output.writeByte(PROCESSED);
+            output.writeInt(eventIds.get(parentEvent));
+            output.flush();
+            if (System.currentTimeMillis() - lastSyncMillis >= syncIntervalMillis) {
+                sync();
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing to checkpoint");
+        }
+    }
+
+    public void close() {
+        try {
+            sync();
+            output.close();
+        } catch (IOException ignored) { }
+    }
+
+    private void open(boolean append, long validLength) throws IOException {
+        if (append) {
+            try (RandomAccessFile file = new RandomAccessFile(checkpointFileName, "rw")) {
+                file.setLength(validLength);
+            }
+        }
+        fileOutputStream = new FileOutputStream(checkpointFileName, append);
+        output = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private void sync() throws IOException {
+        output.flush();
+        fileOutputStream.getChannel().force(false);
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private void writeDiscovered(Event event) throws IOException {
+        int id = eventIds.size();
+        eventIds.put(event, id);
+        output.writeByte(DISCOVERED);
+        output.writeInt(id);
+        writeString(event.getEventType());
+        writeString(event.getXpath());
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,36 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+public class CrawlState {
+    private Event baseEvent;
+    private LinkedList<Event> eventList;
+    private Queue<Event> eventQueue;
+    // Parents already fully processed, in the order they were processed
+    private List<Event> processedEvents;
+
+    CrawlState(Event baseEvent, LinkedList<Event> eventList, Queue<Event> eventQueue, List<Event> processedEvents) {
+        this.baseEvent = baseEvent;
+        this.eventList = eventList;
+        this.eventQueue = eventQueue;
+        this.processedEvents = processedEvents;
+    }
+
+    public Event getBaseEvent() {
+        return baseEvent;
+    }
+
+    public LinkedList<Event> getEventList() {
+        return eventList;
+    }
+
+    public Queue<Event> getEventQueue() {
+        return eventQueue;
+    }
+
+    public List<Event> getProcessedEvents() {
+        return processedEvents;
+    }
+}
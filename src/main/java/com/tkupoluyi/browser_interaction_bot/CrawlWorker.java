@@ -0,0 +1,207 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.DeadlineExceededException;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.metrics.ProbeLog;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.function.UnaryOperator;
+
+public class CrawlWorker implements Runnable {
+    private ChromeDriver driver;
+    private EventHandler eventHandler;
+    private String url;
+    private BlockingQueue<ProbeTask> taskQueue;
+    // The parent whose state the browser is currently in, null when the page needs a reload and replay
+    private Event currentParent;
+    private PageStateSnapshot parentSnapshot;
+    private boolean snapshotRestore;
+    private int verifiedRestoreCount;
+    private int divergedRestoreCount;
+    private int fallbackReloadCount;
+    private ProbeLog probeLog;
+    private boolean measureChildren;
+    private StateAbstraction stateAbstraction;
+    private UnaryOperator<ChromeDriver> relauncher;
+
+    CrawlWorker(ChromeDriver driver, EventHandler eventHandler, String url, BlockingQueue<ProbeTask> taskQueue) {
+        this.driver = driver;
+        this.eventHandler = eventHandler;
+        this.url = url;
+        this.taskQueue = taskQueue;
+        this.eventHandler.setDriver(driver);
+    }
+
+    public ChromeDriver getDriver() {
+        return driver;
+    }
+
+    void setCurrentParent(Event currentParent, PageStateSnapshot parentSnapshot) {
+        this.currentParent = currentParent;
+        this.parentSnapshot = parentSnapshot;
+    }
+
+    void setSnapshotRestore(boolean snapshotRestore) {
+        this.snapshotRestore = snapshotRestore;
+    }
+
+    void setProbeLog(ProbeLog probeLog) {
+        this.probeLog = probeLog;
+    }
+
+    void setMeasureChildren(boolean measureChildren) {
+        this.measureChildren = measureChildren;
+    }
+
+    void setStateAbstraction(StateAbstraction stateAbstraction) {
+        this.stateAbstraction = stateAbstraction;
+    }
+
+    // Replaces a hung browser with the one returned for it
+    void setRelauncher(UnaryOperator<ChromeDriver> relauncher) {
+        this.relauncher = relauncher;
+    }
+
+    // Moves the worker to another browser, whose page has to be rebuilt before the next probe
+    void setDriver(ChromeDriver driver) {
+        this.driver = driver;
+        this.eventHandler.setDriver(driver);
+        this.currentParent = null;
+    }
+
+    public int getVerifiedRestoreCount() {
+        return verifiedRestoreCount;
+    }
+
+    public int getDivergedRestoreCount() {
+        return divergedRestoreCount;
+    }
+
+    public int getFallbackReloadCount() {
+        return fallbackReloadCount;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            ProbeTask task;
+            try {
+                task = taskQueue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            // Whatever goes wrong, the task is completed exactly once so the coordinator never waits on it forever
+            try {
+                probe(task);
+            } catch (RuntimeException ex) {
+                System.out.println("Probe of " + task.getCandidateEvent().getXpath() + " failed, " + ex);
+                currentParent = null;
+            } finally {
+                task.complete(false, InteractionBotException.UNSPECIFIED_EXCEPTION);
+            }
+        }
+    }
+
+    private void probe(ProbeTask task) {
+        try {
+            if (currentParent != task.getParentEvent()) {
+                restoreParentState(task.getParentEvent());
+            }
+            long probeStart = System.nanoTime();
+            try {
+                eventHandler.triggerEvent(task.getCandidateEvent());
+            } catch (InteractionBotException ex) {
+                ChromeExecution.recordProbe(probeLog, task.getParentEvent(), task.getCandidateEvent(),
+                        InteractionBotException.getTypeName(ex.getExceptionType()), System.nanoTime() - probeStart);
+                if (ex.getExceptionType() == InteractionBotException.DEADLINE_EXCEEDED) {
+                    relaunch();
+                } else if (!BrowserInteractions.getCurrentUrl(driver).equals(url)) {
+                    currentParent = null;
+                }
+                task.complete(false, ex.getExceptionType());
+                return;
+            }
+            ChromeExecution.recordProbe(probeLog, task.getParentEvent(), task.getCandidateEvent(), "triggered", System.nanoTime() - probeStart);
+            if (measureChildren) {
+                task.setChildMeasures(BrowserInteractions.measurePage(driver, task.getCandidateEvent().getXpath()));
+            }
+            if (stateAbstraction != null) {
+                task.setChildStateHash(stateAbstraction.hashState(driver));
+            }
+            task.complete(true, 0);
+            restoreAfterProbe(task.getParentEvent());
+        } catch (InteractionBotException ex) {
+            if (ex.getExceptionType() == InteractionBotException.DEADLINE_EXCEEDED) {
+                relaunch();
+            }
+            currentParent = null;
+            task.complete(false, ex.getExceptionType());
+        } catch (DeadlineExceededException ex) {
+            relaunch();
+            task.complete(false, InteractionBotException.DEADLINE_EXCEEDED);
+        } catch (WebDriverException ex) {
+            currentParent = null;
+            task.complete(false, InteractionBotException.UNREACHEABLE_BROWSER);
+        }
+    }
+
+    private void relaunch() {
+        if (relauncher != null) {
+            setDriver(relauncher.apply(driver));
+        }
+        currentParent = null;
+    }
+
+    // Reverts to the snapshot the parent's chain started from and replays the chain, or leaves the parent state to be
+    // rebuilt by the next probe when there is no snapshot or it could not be written back
+    private void restoreAfterProbe(Event parentEvent) throws InteractionBotException {
+        long start = ChromeExecution.restoreTimer.start();
+        try {
+            if (parentSnapshot == null || !parentSnapshot.revert(driver)) {
+                if (snapshotRestore) {
+                    fallbackReloadCount++;
+                }
+                currentParent = null;
+                return;
+            }
+            replayChain(parentEvent);
+            if (parentSnapshot.matches(driver)) {
+                verifiedRestoreCount++;
+            } else {
+                divergedRestoreCount++;
+            }
+        } finally {
+            ChromeExecution.restoreTimer.stop(start);
+        }
+    }
+
+    private void restoreParentState(Event parentEvent) throws InteractionBotException {
+        BrowserInteractions.openPage(driver, url);
+        BrowserInteractions.scrollToTop(driver);
+        parentSnapshot = snapshotRestore ? PageStateSnapshot.capture(driver) : null;
+        replayChain(parentEvent);
+        currentParent = parentEvent;
+        if (parentSnapshot != null) {
+            parentSnapshot.recordChainState(driver);
+        }
+    }
+
+    private void replayChain(Event parentEvent) throws InteractionBotException {
+        long start = ChromeExecution.replayTimer.start();
+        try {
+            for (Event predecessor: parentEvent.getPredecessorEvents()) {
+                eventHandler.triggerEvent(predecessor);
+            }
+            eventHandler.triggerEvent(parentEvent);
+        } catch (InteractionBotException ex) {
+            if (ex.getExceptionType() == InteractionBotException.UNREACHEABLE_BROWSER || ex.getExceptionType() == InteractionBotException.DEADLINE_EXCEEDED) {
+                throw ex;
+            }
+        } finally {
+            ChromeExecution.replayTimer.stop(start);
+        }
+    }
+}
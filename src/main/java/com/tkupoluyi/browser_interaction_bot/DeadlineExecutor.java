@@ -0,0 +1,117 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.exceptions.DeadlineExceededException;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.metrics.Counter;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Runs driver and DevTools calls on a pool thread and waits at most a deadline for them, so a hung renderer costs one
+// deadline instead of stalling the crawl. A call past its deadline is cancelled and abandoned, its thread stays blocked
+// until the browser behind it is quit, and the caller gets a DeadlineExceededException (or an InteractionBotException
+// of type DEADLINE_EXCEEDED) to relaunch the browser on. Every operation is timed and its timeouts are counted.
+public class DeadlineExecutor {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "driver-call-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> timeoutCounters = new ConcurrentHashMap<>();
+    private static volatile long operationDeadlineMillis = 30000;
+    private static volatile long pageLoadDeadlineMillis = 60000;
+
+    public interface Interaction {
+        void run() throws InteractionBotException;
+    }
+
+    // Deadlines of 0 run calls directly on the calling thread, without any deadline
+    public static void setDeadlines(long operationDeadlineMillis, long pageLoadDeadlineMillis) {
+        DeadlineExecutor.operationDeadlineMillis = operationDeadlineMillis;
+        DeadlineExecutor.pageLoadDeadlineMillis = pageLoadDeadlineMillis;
+    }
+
+    public static long getOperationDeadlineMillis() {
+        return operationDeadlineMillis;
+    }
+
+    public static long getPageLoadDeadlineMillis() {
+        return pageLoadDeadlineMillis;
+    }
+
+    public static <T> T call(String operation, Supplier<T> call) {
+        return call(operation, operationDeadlineMillis, call);
+    }
+
+    public static <T> T call(String operation, long deadlineMillis, Supplier<T> call) {
+        Timer timer = operationTimers.computeIfAbsent(operation, name -> Metrics.timer("driver_call", "operation", name));
+        long start = timer.start();
+        try {
+            if (deadlineMillis <= 0) {
+                return call.get();
+            }
+            Future<T> future = executor.submit(call::get);
+            try {
+                return future.get(deadlineMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                timeoutCounters.computeIfAbsent(operation, name -> Metrics.counter("driver_call_timeouts", "operation", name)).increment();
+                throw new DeadlineExceededException(operation, deadlineMillis);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw new WebDriverException(ex.getCause());
+            } catch (InterruptedException ex) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new WebDriverException("Interrupted while waiting for " + operation);
+            }
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    // Runs an event trigger under the operation deadline, reporting a timeout as an InteractionBotException
+    public static void callInteraction(String operation, Interaction interaction) throws InteractionBotException {
+        try {
+            InteractionBotException failure = call(operation, () -> {
+                try {
+                    interaction.run();
+                    return null;
+                } catch (InteractionBotException ex) {
+                    return ex;
+                }
+            });
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (DeadlineExceededException ex) {
+            throw new InteractionBotException(InteractionBotException.DEADLINE_EXCEEDED, ex.getMessage());
+        }
+    }
+
+    public static void printReport() {
+        if (operationTimers.isEmpty()) {
+            return;
+        }
+        System.out.println("Driver calls:");
+        for (Map.Entry<String, Timer> entry: new TreeMap<>(operationTimers).entrySet()) {
+            Timer timer = entry.getValue();
+            Counter timeouts = timeoutCounters.get(entry.getKey());
+            System.out.println(String.format("  %s: %d calls, p50 %.0fms, p99 %.0fms, %d timeouts", entry.getKey(), timer.getCount(),
+                    timer.getQuantileMillis(0.5), timer.getQuantileMillis(0.99), timeouts == null ? 0 : timeouts.getCount()));
+        }
+    }
+}
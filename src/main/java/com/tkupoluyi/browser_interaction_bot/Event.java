@@ -4,23 +4,40 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+// Events form a tree through parent pointers, so a child shares its whole predecessor chain with its parent instead
+// of holding a copy. The chain is rebuilt on demand, and the JSON and DOT fragments for each event are rendered once.
 public class Event {
     private String eventType;
     private String xpath;
-    private List<Event> predecessorEvents;
+    private Event parent;
+    private int depth;
     private List<Event> children;
+    private String serializedFragment;
+    private String dotFragment;
+    private String stateHash;
+    private Event stateEvent;
 
     Event(String eventType, String xpath) {
-        this.eventType = eventType;
-        this.xpath = xpath;
-        predecessorEvents = new ArrayList<>();
+        this.eventType = eventType.intern();
+        this.xpath = xpath.intern();
+        this.parent = null;
+        this.depth = 0;
         children = new ArrayList<Event>();
     }
 
+    // Attaches this event below the last of predecessorEvents, whose own chain supplies the earlier predecessors
     public void setPredecessorEvents(List<Event> predecessorEvents) {
-        this.predecessorEvents = predecessorEvents;
+        if (predecessorEvents.isEmpty()) {
+            this.parent = null;
+            this.depth = 0;
+        } else {
+            this.parent = predecessorEvents.get(predecessorEvents.size() - 1);
+            this.depth = parent.depth + 1;
+        }
     }
 
     public String getEventType() {
@@ -31,39 +48,101 @@ public class Event {
         return xpath;
     }
 
+    public Event getParent() {
+        return parent;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
     public List<Event> getPredecessorEvents() {
-        return predecessorEvents;
+        Event[] predecessorEvents = new Event[depth];
+        Event predecessor = parent;
+        for (int i = depth - 1; i >= 0; i--) {
+            predecessorEvents[i] = predecessor;
+            predecessor = predecessor.parent;
+        }
+        return Collections.unmodifiableList(Arrays.asList(predecessorEvents));
+    }
+
+    // The abstract page state this event leads to, null when states are not hashed or the state was already visited
+    public String getStateHash() {
+        return stateHash;
+    }
+
+    void setStateHash(String stateHash) {
+        this.stateHash = stateHash;
+    }
+
+    // The event that first reached the state this event leads to, when that state was visited before. The graph then
+    // points at the shared state node and the event itself is never crawled as a parent.
+    public Event getStateEvent() {
+        return stateEvent;
+    }
+
+    void setStateEvent(Event stateEvent) {
+        this.stateEvent = stateEvent;
+    }
+
+    public List<Event> getChildren() {
+        return children;
     }
 
     public void addChild(Event childEvent) {
         children.add(childEvent);
-        childEvent.predecessorEvents.addAll(predecessorEvents);
-        childEvent.predecessorEvents.add(this);
+        childEvent.parent = this;
+        childEvent.depth = depth + 1;
     }
 
     public JSONObject serializeEvent() { ;
         JSONObject obj = new JSONObject();
         obj.put("event", eventType);
         obj.put("xpath", xpath);
+        if (stateHash != null) {
+            obj.put("state", stateHash);
+        }
         return obj;
     }
 
     public JSONArray serializeFullEventTrace() {
         JSONArray returnArray = new JSONArray();
-        for(Event predecessor: predecessorEvents) {
+        for(Event predecessor: getPredecessorEvents()) {
             returnArray.add(predecessor.serializeEvent());
         }
         returnArray.add(serializeEvent());
         return returnArray;
     }
 
+    // Same output as serializeFullEventTrace().toJSONString(), assembled from the cached fragments
+    public String serializeFullEventTraceString() {
+        StringBuilder returnStringBuilder = new StringBuilder("[");
+        for(Event predecessor: getPredecessorEvents()) {
+            returnStringBuilder.append(predecessor.getSerializedFragment());
+            returnStringBuilder.append(',');
+        }
+        returnStringBuilder.append(getSerializedFragment());
+        returnStringBuilder.append(']');
+        return returnStringBuilder.toString();
+    }
+
+    private String getSerializedFragment() {
+        if (serializedFragment == null) {
+            serializedFragment = serializeEvent().toJSONString();
+        }
+        return serializedFragment;
+    }
+
     public String generateDOTString() {
-        return "\""+ xpath + " | " + eventType + "\"";
+        if (dotFragment == null) {
+            dotFragment = "\""+ xpath + " | " + eventType + "\"";
+        }
+        return dotFragment;
     }
 
     public String generateFullDOTRepresentation() {
         StringBuilder returnStringBuilder = new StringBuilder();
-        for(Event predecessor: predecessorEvents) {
+        for(Event predecessor: getPredecessorEvents()) {
             returnStringBuilder.append(predecessor.generateDOTString());
             returnStringBuilder.append("->");
         }
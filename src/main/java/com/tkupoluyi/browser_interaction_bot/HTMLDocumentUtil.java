@@ -5,26 +5,85 @@ import org.jsoup.nodes.Element;
 import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.jsoup.*;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
 
 import java.util.*;
+import java.util.function.Function;
 
 public class HTMLDocumentUtil {
+    public static final int DFS_DISCOVERY = 1;
+    public static final int BATCHED_DISCOVERY = 2;
+    public static final int COMPARE_DISCOVERY = 3;
+    public static final int STREAMING_DISCOVERY = 4;
+
+    // Levels fetched per DOM.describeNode call when streaming, so only the chunk being walked is held in memory
+    private static final int CHUNK_DEPTH = 8;
+    private static final int ID_XPATH = 0;
+    private static final int CLASS_XPATH = 1;
 
     private Document doc;
     private Map<String, Integer> globalXpathMap;
     private ChromeDriver driver;
     private LinkedList<Event> eventList;
+    private Function<String, ArrayList<Map>> listenerLookup;
 
     HTMLDocumentUtil(ChromeDriver driver) {
-        this.doc = Jsoup.parse(driver.getPageSource());
+        this(driver, DFS_DISCOVERY);
+    }
+
+    HTMLDocumentUtil(ChromeDriver driver, int discoveryMode) {
         this.driver = driver;
+        this.listenerLookup = this::getEventListenersByXpath;
+        Timer discoveryTimer = Metrics.timer("discovery", "mode", discoveryMode == BATCHED_DISCOVERY ? "batched" : discoveryMode == COMPARE_DISCOVERY ? "compare"
+                : discoveryMode == STREAMING_DISCOVERY ? "streaming" : "dfs");
+        long start = discoveryTimer.start();
+        if (discoveryMode == BATCHED_DISCOVERY) {
+            this.eventList = discoverBatched();
+        } else if (discoveryMode == STREAMING_DISCOVERY) {
+            this.eventList = discoverStreaming();
+        } else if (discoveryMode == COMPARE_DISCOVERY) {
+            long dfsStart = System.currentTimeMillis();
+            LinkedList<Event> dfsEvents = discoverByDfs();
+            long batchedStart = System.currentTimeMillis();
+            LinkedList<Event> batchedEvents = discoverBatched();
+            long batchedEnd = System.currentTimeMillis();
+            System.out.println("DFS discovery: " + dfsEvents.size() + " events in " + (batchedStart - dfsStart) + "ms");
+            System.out.println("Batched discovery: " + batchedEvents.size() + " events in " + (batchedEnd - batchedStart) + "ms");
+            printDiscoveryDifferences(dfsEvents, batchedEvents);
+            this.eventList = dfsEvents;
+        } else {
+            this.eventList = discoverByDfs();
+        }
+        discoveryTimer.stop(start);
+    }
+
+    // Walks an already parsed document, resolving listeners through listenerLookup instead of a browser
+    HTMLDocumentUtil(Document doc, Function<String, ArrayList<Map>> listenerLookup) {
+        this.listenerLookup = listenerLookup;
+        this.eventList = walkDocument(doc);
+    }
+
+    // Walks an already resolved CDP body node, with listener types keyed by backendNodeId, instead of a browser
+    HTMLDocumentUtil(Map body, Map<Object, List<String>> listenerTypes) {
+        this.eventList = new LinkedList<>();
+        walkNodes(body, listenerTypes, false);
+    }
+
+    private LinkedList<Event> discoverByDfs() {
+        return walkDocument(Jsoup.parse(driver.getPageSource()));
+    }
+
+    private LinkedList<Event> walkDocument(Document doc) {
+        this.doc = doc;
         this.eventList = new LinkedList<>();
         this.globalXpathMap = new HashMap<>();
         dfs(doc.body(), "/html/body");
+        return eventList;
     }
 
     private void dfs(Element root, String xpath) {
-        ArrayList<Map> listeners = getEventListenersByXpath(xpath);
+        ArrayList<Map> listeners = listenerLookup.apply(xpath);
 
         for (Map listener: listeners) {
             Event event = new Event((String) listener.get("type"), xpath);
@@ -35,23 +94,270 @@ public class HTMLDocumentUtil {
         for (int i = 0; i< root.childrenSize(); i++) {
             Element child = root.child(i);
             String tagName = child.tagName();
-            if (!tagName.equals("link") && !tagName.equals("script") && !tagName.equals("style") && !tagName.equals("svg") && !tagName.equals("img")) {
+            if (isTraversable(tagName)) {
                 int currTagIndex = map.getOrDefault(tagName, 0) + 1;
                 map.put(tagName, currTagIndex);
-                if (child.attributes().hasKey("id")) {
-                    String childXpath = "//" + tagName + "[@id='" + child.attributes().get("id") + "']";
-                    Integer index = globalXpathMap.getOrDefault(childXpath, 0) + 1;
-                    globalXpathMap.put(childXpath, index);
-                    dfs(child, "("+childXpath+")"+"["+index+"]");
-                } else if (child.attributes().hasKey("class")) {
-                    String childXpath = "//" + tagName + "[@class='" + child.attributes().get("class") + "']";
-                    Integer index = this.globalXpathMap.getOrDefault(childXpath, 0) + 1;
-                    globalXpathMap.put(childXpath, index);
-                    dfs(child, "("+childXpath+")"+"["+index+"]");
-                } else {
-                    dfs(child, xpath + "/" + tagName + "[" + currTagIndex + "]");
+                String id = child.attributes().hasKey("id") ? child.attributes().get("id") : null;
+                String className = child.attributes().hasKey("class") ? child.attributes().get("class") : null;
+                dfs(child, generateChildXpath(xpath, tagName, currTagIndex, id, className));
+            }
+        }
+    }
+
+    // Resolves the whole document with DOM.getDocument and all listeners in the body subtree with a single
+    // DOMDebugger.getEventListeners call, then rebuilds the same xpaths as dfs without further round-trips
+    private LinkedList<Event> discoverBatched() {
+        this.eventList = new LinkedList<>();
+        try {
+            Map<String, Object> documentQuery = new HashMap<>();
+            documentQuery.put("depth", -1);
+            Map root = (Map) BrowserInteractions.executeCdpCommand(driver, "DOM.getDocument", documentQuery).get("root");
+            Map body = findNodeByName(root, "body");
+            if (body == null) {
+                System.out.println("Trouble locating document body");
+                return eventList;
+            }
+            Map<Object, List<String>> listenerTypes = getSubtreeEventListenerTypes();
+            walkNodes(body, listenerTypes, false);
+        } catch (WebDriverException ex) {
+            System.out.println("Trouble resolving document, " + ex.getMessage());
+        }
+        return eventList;
+    }
+
+    // Fetches the body CHUNK_DEPTH levels at a time with DOM.describeNode instead of resolving the whole document,
+    // so neither the page source nor the full node tree is ever held at once
+    private LinkedList<Event> discoverStreaming() {
+        this.eventList = new LinkedList<>();
+        try {
+            Map<String, Object> bodyQuery = new HashMap<>();
+            bodyQuery.put("expression", "document.body");
+            Map result = (Map) BrowserInteractions.executeCdpCommand(driver, "Runtime.evaluate", bodyQuery).get("result");
+            Map<String, Object> describeQuery = new HashMap<>();
+            describeQuery.put("objectId", result.get("objectId"));
+            describeQuery.put("depth", CHUNK_DEPTH);
+            Map body = (Map) BrowserInteractions.executeCdpCommand(driver, "DOM.describeNode", describeQuery).get("node");
+            walkNodes(body, getSubtreeEventListenerTypes(), true);
+        } catch (WebDriverException ex) {
+            System.out.println("Trouble resolving document, " + ex.getMessage());
+        }
+        return eventList;
+    }
+
+    // Preorder walk with an explicit stack, producing the same events in the same order as dfs. Every level keeps a
+    // [start, end) slice of one shared path buffer: a positional child extends its parent's slice, while an id or
+    // class child starts a new absolute slice after it. Strings are only built for nodes that have listeners.
+    private void walkNodes(Map body, Map<Object, List<String>> listenerTypes, boolean streaming) {
+        StringBuilder path = new StringBuilder("/html/body");
+        Map<String, Integer> tagIds = new HashMap<>();
+        BitSet traversableTags = new BitSet();
+        Map<String, Integer> attributeValueIds = new HashMap<>();
+        LongIntHashMap globalXpathCounts = new LongIntHashMap();
+
+        List<List<Map>> childLists = new ArrayList<>();
+        int[] childIndex = new int[16];
+        int[] pathStart = new int[16];
+        int[] pathEnd = new int[16];
+        int[][] tagCounts = new int[16][];
+
+        addEvents(body, listenerTypes, path, 0, path.length());
+        childLists.add(getChildren(body, streaming));
+        pathEnd[0] = path.length();
+        tagCounts[0] = new int[16];
+        int depth = 0;
+
+        while (depth >= 0) {
+            List<Map> children = childLists.get(depth);
+            if (children == null || childIndex[depth] >= children.size()) {
+                childLists.set(depth, null);
+                depth--;
+                continue;
+            }
+            int index = childIndex[depth]++;
+            Map child = children.get(index);
+            if (streaming) {
+                // Walked nodes are released as soon as they are reached, so memory follows the current chunk only
+                children.set(index, null);
+            }
+            if (((Number) child.get("nodeType")).intValue() != 1) {
+                continue;
+            }
+            String tagName = ((String) child.get("localName")).toLowerCase();
+            Integer tagId = tagIds.get(tagName);
+            if (tagId == null) {
+                tagId = tagIds.size();
+                tagIds.put(tagName, tagId);
+                traversableTags.set(tagId, isTraversable(tagName));
+            }
+            if (!traversableTags.get(tagId)) {
+                continue;
+            }
+            int[] counts = tagCounts[depth];
+            if (tagId >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(counts.length * 2, tagId + 1));
+                tagCounts[depth] = counts;
+            }
+            int currTagIndex = ++counts[tagId];
+
+            path.setLength(pathEnd[depth]);
+            int childStart = pathStart[depth];
+            String id = null;
+            String className = null;
+            List<String> attributes = (List<String>) child.get("attributes");
+            if (attributes != null) {
+                for (int i = 0; i + 1 < attributes.size(); i += 2) {
+                    if (id == null && attributes.get(i).equals("id")) {
+                        id = attributes.get(i + 1);
+                    } else if (className == null && attributes.get(i).equals("class")) {
+                        className = attributes.get(i + 1);
+                    }
                 }
             }
+            if (id != null || className != null) {
+                String value = id != null ? id : className;
+                Integer valueId = attributeValueIds.get(value);
+                if (valueId == null) {
+                    valueId = attributeValueIds.size();
+                    attributeValueIds.put(value, valueId);
+                }
+                long key = ((long) tagId << 33) | ((long) (id != null ? ID_XPATH : CLASS_XPATH) << 32) | valueId;
+                childStart = path.length();
+                path.append("(//").append(tagName).append(id != null ? "[@id='" : "[@class='").append(value).append("'])[")
+                        .append(globalXpathCounts.increment(key)).append(']');
+            } else {
+                path.append('/').append(tagName).append('[').append(currTagIndex).append(']');
+            }
+
+            addEvents(child, listenerTypes, path, childStart, path.length());
+            depth++;
+            if (depth == pathEnd.length) {
+                childIndex = Arrays.copyOf(childIndex, depth * 2);
+                pathStart = Arrays.copyOf(pathStart, depth * 2);
+                pathEnd = Arrays.copyOf(pathEnd, depth * 2);
+                tagCounts = Arrays.copyOf(tagCounts, depth * 2);
+            }
+            if (depth == childLists.size()) {
+                childLists.add(null);
+            }
+            childLists.set(depth, getChildren(child, streaming));
+            childIndex[depth] = 0;
+            pathStart[depth] = childStart;
+            pathEnd[depth] = path.length();
+            if (tagCounts[depth] == null) {
+                tagCounts[depth] = new int[Math.max(16, tagIds.size())];
+            } else {
+                Arrays.fill(tagCounts[depth], 0);
+            }
+        }
+    }
+
+    private void addEvents(Map node, Map<Object, List<String>> listenerTypes, StringBuilder path, int start, int end) {
+        List<String> types = listenerTypes.get(backendNodeId(node));
+        if (types != null) {
+            String xpath = path.substring(start, end);
+            for (String type: types) {
+                this.eventList.add(new Event(type, xpath));
+            }
+        }
+    }
+
+    // When streaming, a node at the edge of the fetched chunk reports only childNodeCount, and its next chunk is
+    // described on demand
+    private List<Map> getChildren(Map node, boolean streaming) {
+        List<Map> children = (List<Map>) node.get("children");
+        Object childNodeCount = node.get("childNodeCount");
+        if (children != null || !streaming || !(childNodeCount instanceof Number) || ((Number) childNodeCount).intValue() == 0) {
+            return children;
+        }
+        Map<String, Object> describeQuery = new HashMap<>();
+        describeQuery.put("backendNodeId", node.get("backendNodeId"));
+        describeQuery.put("depth", CHUNK_DEPTH);
+        try {
+            Map described = (Map) BrowserInteractions.executeCdpCommand(driver, "DOM.describeNode", describeQuery).get("node");
+            return (List<Map>) described.get("children");
+        } catch (WebDriverException ex) {
+            System.out.println("Trouble describing node, " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private Map<Object, List<String>> getSubtreeEventListenerTypes() {
+        Map<Object, List<String>> listenerTypes = new HashMap<>();
+        Map<String, Object> bodyQuery = new HashMap<>();
+        bodyQuery.put("expression", "document.body");
+        Map result = (Map) BrowserInteractions.executeCdpCommand(driver, "Runtime.evaluate", bodyQuery).get("result");
+
+        Map<String, Object> listenerQuery = new HashMap<>();
+        listenerQuery.put("objectId", result.get("objectId"));
+        listenerQuery.put("depth", -1);
+        List<Map> listeners = (List<Map>) BrowserInteractions.executeCdpCommand(driver, "DOMDebugger.getEventListeners", listenerQuery).get("listeners");
+        for (Map listener: listeners) {
+            Object nodeId = normalizeNodeId(listener.get("backendNodeId"));
+            listenerTypes.computeIfAbsent(nodeId, k -> new ArrayList<>()).add((String) listener.get("type"));
+        }
+        return listenerTypes;
+    }
+
+    private Map findNodeByName(Map node, String localName) {
+        if (localName.equals(node.get("localName"))) {
+            return node;
+        }
+        List<Map> children = (List<Map>) node.get("children");
+        if (children != null) {
+            for (Map child: children) {
+                Map found = findNodeByName(child, localName);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Object backendNodeId(Map node) {
+        return normalizeNodeId(node.get("backendNodeId"));
+    }
+
+    private Object normalizeNodeId(Object nodeId) {
+        return nodeId instanceof Number ? ((Number) nodeId).longValue() : nodeId;
+    }
+
+    private boolean isTraversable(String tagName) {
+        return !tagName.equals("link") && !tagName.equals("script") && !tagName.equals("style") && !tagName.equals("svg") && !tagName.equals("img");
+    }
+
+    private String generateChildXpath(String parentXpath, String tagName, int currTagIndex, String id, String className) {
+        String childXpath;
+        if (id != null) {
+            childXpath = "//" + tagName + "[@id='" + id + "']";
+        } else if (className != null) {
+            childXpath = "//" + tagName + "[@class='" + className + "']";
+        } else {
+            return parentXpath + "/" + tagName + "[" + currTagIndex + "]";
+        }
+        Integer index = globalXpathMap.getOrDefault(childXpath, 0) + 1;
+        globalXpathMap.put(childXpath, index);
+        return "(" + childXpath + ")" + "[" + index + "]";
+    }
+
+    private void printDiscoveryDifferences(List<Event> dfsEvents, List<Event> batchedEvents) {
+        Set<String> dfsKeys = new LinkedHashSet<>();
+        for (Event event: dfsEvents) {
+            dfsKeys.add(event.getEventType() + " " + event.getXpath());
+        }
+        Set<String> batchedKeys = new LinkedHashSet<>();
+        for (Event event: batchedEvents) {
+            batchedKeys.add(event.getEventType() + " " + event.getXpath());
+        }
+        for (String key: dfsKeys) {
+            if (!batchedKeys.contains(key)) {
+                System.out.println("Only in DFS discovery: " + key);
+            }
+        }
+        for (String key: batchedKeys) {
+            if (!dfsKeys.contains(key)) {
+                System.out.println("Only in batched discovery: " + key);
+            }
         }
     }
 
@@ -66,7 +372,7 @@ public class HTMLDocumentUtil {
 
     private ArrayList<Map> getEventListenerFromQuery(String xpath, Map query) {
         try {
-            Map result = (Map) driver.executeCdpCommand("Runtime.evaluate", query).get("result");
+            Map result = (Map) BrowserInteractions.executeCdpCommand(driver, "Runtime.evaluate", query).get("result");
             String objectId = (String) result.get("objectId");
             ArrayList<Map> listeners = getEventListenersByObjectId(objectId);
             return listeners;
@@ -81,11 +387,11 @@ public class HTMLDocumentUtil {
         {{
             put("objectId", objectId);
         }};
-        Map result = driver.executeCdpCommand("DOMDebugger.getEventListeners", query);
+        Map result = BrowserInteractions.executeCdpCommand(driver, "DOMDebugger.getEventListeners", query);
         return (ArrayList) result.get("listeners");
     }
 
     public LinkedList<Event> getEventList() {
         return eventList;
     }
-}
\ No newline at end of file
+}
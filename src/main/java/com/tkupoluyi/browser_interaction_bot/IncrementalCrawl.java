@@ -0,0 +1,367 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+// Re-crawls a site against the event graph of a previous run. Every element with listeners is fingerprinted by a hash
+// of its DOM subtree and its listener types. A parent whose element and predecessor chain are unchanged takes its
+// unchanged children over from the previous run without triggering them, and only probes candidates that changed or
+// were never probed after it; with nothing left to probe it is completed without a replay, reusing its previous
+// screenshot. Each run writes its own graph with fingerprints (crawl_graph) for the next one, and the dependencies
+// added and removed since the previous run (dependency_diff.tsv).
+public class IncrementalCrawl {
+    private static final int MAGIC = 0x42494947;
+    private static final long MISSING = -1;
+    private static final String[] SCREENSHOT_EXTENSIONS = {"png", "jpg", "webp"};
+
+    // Hashes every element bottom up from its tag, attributes, text and child hashes, then returns the hash of the
+    // element at each xpath, or -1 when there is none
+    private static final String FINGERPRINT_SCRIPT =
+            "var xpaths = arguments[0], ignoreText = arguments[1] ? new RegExp(arguments[1], 'g') : null;" +
+            "var hashes = new Map(), stack = [document.documentElement], order = [], fingerprints = [];" +
+            "function mix(hash, text, prime) {" +
+            "  for (var i = 0; i < text.length; i++) { hash = Math.imul(hash ^ text.charCodeAt(i), prime); }" +
+            "  return hash;" +
+            "}" +
+            "while (stack.length > 0) {" +
+            "  var element = stack.pop();" +
+            "  order.push(element);" +
+            "  for (var child = element.firstElementChild; child; child = child.nextElementSibling) { stack.push(child); }" +
+            "}" +
+            "for (var i = order.length - 1; i >= 0; i--) {" +
+            "  var element = order[i], parts = [element.tagName];" +
+            "  for (var a = 0; a < element.attributes.length; a++) { parts.push(element.attributes[a].name + '=' + element.attributes[a].value); }" +
+            "  for (var node = element.firstChild; node; node = node.nextSibling) {" +
+            "    if (node.nodeType === 1) { parts.push(hashes.get(node)); }" +
+            "    else if (node.nodeType === 3) { parts.push(ignoreText ? node.data.replace(ignoreText, '') : node.data); }" +
+            "  }" +
+            "  var text = parts.join('\\u0001');" +
+            "  hashes.set(element, ((mix(0x811c9dc5, text, 16777619) >>> 0) + 4294967296 * (mix(0x41c6ce57, text, 2246822519) & 0x1fffff)).toString());" +
+            "}" +
+            "for (var i = 0; i < xpaths.length; i++) {" +
+            "  var element = null;" +
+            "  try { element = document.evaluate(xpaths[i], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; } catch (e) { }" +
+            "  fingerprints.push(element && hashes.has(element) ? hashes.get(element) : '-1');" +
+            "}" +
+            "return fingerprints;";
+
+    private static class PreviousEvent {
+        String parentKey;
+        int processedOrder;
+        int screenshotNumber;
+        boolean knownState;
+        Set<String> childKeys = new HashSet<>();
+    }
+
+    private String previousDirectory;
+    private boolean copyScreenshots;
+    private String ignoreText;
+    private Map<String, Long> previousFingerprints;
+    private Map<String, PreviousEvent> previousEvents;
+
+    private Event baseEvent;
+    private Map<String, Long> fingerprints;
+    private Map<Event, Integer> processedOrders;
+    private Map<Event, Integer> screenshotNumbers;
+    private Set<Event> carriedEvents;
+    private Set<Event> carriedKnownStates;
+    private Event plannedParent;
+    private List<Event> carriedChildren;
+    private List<Event> probeCandidates;
+
+    private int changedElementCount;
+    private int carriedChildCount;
+    private int completedParentCount;
+    private int skippedProbeCount;
+
+    public IncrementalCrawl(String previousDirectory, String outputDirectory, String ignoreText) throws IOException {
+        this.previousDirectory = previousDirectory;
+        this.ignoreText = ignoreText;
+        this.previousFingerprints = new HashMap<>();
+        this.previousEvents = new HashMap<>();
+        this.fingerprints = new HashMap<>();
+        this.processedOrders = new IdentityHashMap<>();
+        this.screenshotNumbers = new IdentityHashMap<>();
+        this.carriedEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.carriedKnownStates = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Screenshots are renumbered in this run, so reading them from the directory being written would clobber them
+        this.copyScreenshots = previousDirectory != null
+                && !Paths.get(previousDirectory).toAbsolutePath().normalize().equals(Paths.get(outputDirectory).toAbsolutePath().normalize());
+        if (previousDirectory != null && Files.exists(Paths.get(previousDirectory, "crawl_graph"))) {
+            readPreviousGraph(previousDirectory + "/crawl_graph");
+        } else {
+            System.out.println("No previous crawl graph, crawling everything");
+        }
+    }
+
+    private static String getKey(Event event) {
+        return event.getEventType() + " " + event.getXpath();
+    }
+
+    // Fingerprints every element with listeners on the base page, both the events still in eventList and those
+    // already in the tree below baseEvent when resuming. The base page is where carrying forward starts.
+    public void fingerprint(ChromeDriver driver, Event baseEvent, List<Event> eventList) {
+        this.baseEvent = baseEvent;
+        Map<String, List<String>> listenerTypes = new LinkedHashMap<>();
+        List<Event> events = new ArrayList<>(eventList);
+        collectTree(baseEvent, events);
+        for (Event event: events) {
+            if (event != baseEvent) {
+                listenerTypes.computeIfAbsent(event.getXpath(), xpath -> new ArrayList<>()).add(event.getEventType());
+            }
+        }
+        List<String> xpaths = new ArrayList<>(listenerTypes.keySet());
+        List<String> elementHashes = null;
+        try {
+            elementHashes = (List<String>) driver.executeScript(FINGERPRINT_SCRIPT, xpaths, ignoreText);
+        } catch (WebDriverException ex) {
+            System.out.println("Could not fingerprint elements, " + ex.getMessage());
+        }
+        if (elementHashes == null || elementHashes.size() != xpaths.size()) {
+            return;
+        }
+        for (int i = 0; i < xpaths.size(); i++) {
+            long elementHash = Long.parseLong(elementHashes.get(i));
+            if (elementHash == MISSING) {
+                continue;
+            }
+            List<String> types = listenerTypes.get(xpaths.get(i));
+            Collections.sort(types);
+            long fingerprint = elementHash;
+            for (String type: types) {
+                fingerprint = fingerprint * 31 + type.hashCode();
+            }
+            fingerprints.put(xpaths.get(i), fingerprint);
+            if (!Long.valueOf(fingerprint).equals(previousFingerprints.get(xpaths.get(i)))) {
+                changedElementCount++;
+            }
+        }
+        carriedEvents.add(baseEvent);
+    }
+
+    private void collectTree(Event event, List<Event> events) {
+        Deque<Event> stack = new ArrayDeque<>();
+        stack.push(event);
+        while (!stack.isEmpty()) {
+            Event current = stack.pop();
+            events.add(current);
+            for (Event childEvent: current.getChildren()) {
+                stack.push(childEvent);
+            }
+        }
+    }
+
+    private boolean isUnchanged(Event event) {
+        Long fingerprint = fingerprints.get(event.getXpath());
+        return fingerprint != null && fingerprint.equals(previousFingerprints.get(event.getXpath()));
+    }
+
+    // Splits the candidates of a carried parent into children taken over from the previous run and candidates that
+    // still have to be probed. Returns false for parents that are crawled in full: new or changed elements, parents
+    // reached through a changed chain and parents the previous run never completed.
+    public boolean plan(Event parentEvent, List<Event> eventList) {
+        plannedParent = null;
+        PreviousEvent previousParent = previousEvents.get(getKey(parentEvent));
+        if (!carriedEvents.contains(parentEvent) || previousParent == null || previousParent.processedOrder < 0) {
+            return false;
+        }
+        carriedChildren = new ArrayList<>();
+        probeCandidates = new ArrayList<>();
+        for (Event candidate: eventList) {
+            String candidateKey = getKey(candidate);
+            PreviousEvent previousCandidate = previousEvents.get(candidateKey);
+            if (!isUnchanged(candidate)) {
+                probeCandidates.add(candidate);
+            } else if (previousParent.childKeys.contains(candidateKey)) {
+                carriedChildren.add(candidate);
+            } else if (previousCandidate != null && previousCandidate.parentKey != null
+                    && previousEvents.get(previousCandidate.parentKey).processedOrder < previousParent.processedOrder) {
+                // Claimed before this parent last time, so it was never probed here
+                probeCandidates.add(candidate);
+            }
+        }
+        for (Event childEvent: carriedChildren) {
+            carriedEvents.add(childEvent);
+            if (previousEvents.get(getKey(childEvent)).knownState) {
+                carriedKnownStates.add(childEvent);
+            }
+        }
+        plannedParent = parentEvent;
+        carriedChildCount += carriedChildren.size();
+        skippedProbeCount += eventList.size() - carriedChildren.size() - probeCandidates.size();
+        if (probeCandidates.isEmpty()) {
+            completedParentCount++;
+        }
+        return true;
+    }
+
+    public List<Event> getCarriedChildren() {
+        return carriedChildren;
+    }
+
+    public boolean reachedKnownState(Event childEvent) {
+        return carriedKnownStates.contains(childEvent);
+    }
+
+    // The candidates to probe after parentEvent, all of eventList unless the parent was planned as carried
+    public List<Event> getProbeCandidates(Event parentEvent, List<Event> eventList) {
+        return parentEvent == plannedParent ? probeCandidates : eventList;
+    }
+
+    public boolean hasProbeCandidates() {
+        return !probeCandidates.isEmpty();
+    }
+
+    public void recordProcessed(Event parentEvent, int screenshotNumber) {
+        processedOrders.put(parentEvent, processedOrders.size());
+        screenshotNumbers.put(parentEvent, screenshotNumber);
+    }
+
+    // Copies the previous run's screenshot of parentEvent to fileName, keeping its extension
+    public void copyScreenshot(Event parentEvent, String fileName) {
+        if (!copyScreenshots) {
+            return;
+        }
+        int screenshotNumber = previousEvents.get(getKey(parentEvent)).screenshotNumber;
+        for (String extension: SCREENSHOT_EXTENSIONS) {
+            Path previousScreenshot = Paths.get(previousDirectory, screenshotNumber + "." + extension);
+            if (Files.exists(previousScreenshot)) {
+                try {
+                    Files.copy(previousScreenshot, Paths.get(fileName + "." + extension), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException ex) {
+                    System.out.println("Error copying screenshot " + previousScreenshot);
+                }
+                return;
+            }
+        }
+    }
+
+    private void readPreviousGraph(String fileName) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a crawl graph, " + fileName);
+            }
+            readString(input);
+            int fingerprintCount = input.readInt();
+            for (int i = 0; i < fingerprintCount; i++) {
+                previousFingerprints.put(readString(input), input.readLong());
+            }
+            int eventCount = input.readInt();
+            List<String> keys = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                int parentId = input.readInt();
+                String key = readString(input) + " " + readString(input);
+                PreviousEvent event = new PreviousEvent();
+                event.parentKey = parentId < 0 ? null : keys.get(parentId);
+                event.processedOrder = input.readInt();
+                event.screenshotNumber = input.readInt();
+                event.knownState = input.readBoolean();
+                keys.add(key);
+                previousEvents.put(key, event);
+                if (event.parentKey != null) {
+                    previousEvents.get(event.parentKey).childKeys.add(key);
+                }
+            }
+        }
+        System.out.println("Previous crawl graph: " + previousEvents.size() + " events, " + previousFingerprints.size() + " fingerprinted elements");
+    }
+
+    // Writes this run's graph and fingerprints for the next run, then the dependencies added and removed since the last
+    public void close(String url, String outputDirectory) {
+        if (baseEvent == null) {
+            return;
+        }
+        List<Event> events = new ArrayList<>();
+        Map<Event, Integer> eventIds = new IdentityHashMap<>();
+        // Parents come before their children, so every parent id is known when a child is read back
+        Deque<Event> stack = new ArrayDeque<>();
+        stack.push(baseEvent);
+        while (!stack.isEmpty()) {
+            Event event = stack.pop();
+            eventIds.put(event, events.size());
+            events.add(event);
+            for (Event childEvent: event.getChildren()) {
+                stack.push(childEvent);
+            }
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputDirectory + "/crawl_graph")))) {
+            output.writeInt(MAGIC);
+            writeString(output, url);
+            output.writeInt(fingerprints.size());
+            for (Map.Entry<String, Long> fingerprint: fingerprints.entrySet()) {
+                writeString(output, fingerprint.getKey());
+                output.writeLong(fingerprint.getValue());
+            }
+            output.writeInt(events.size());
+            for (Event event: events) {
+                output.writeInt(event.getParent() == null ? -1 : eventIds.get(event.getParent()));
+                writeString(output, event.getEventType());
+                writeString(output, event.getXpath());
+                output.writeInt(processedOrders.getOrDefault(event, -1));
+                output.writeInt(screenshotNumbers.getOrDefault(event, -1));
+                output.writeBoolean(event.getStateEvent() != null || carriedKnownStates.contains(event));
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing crawl graph");
+        }
+        writeDiff(outputDirectory + "/dependency_diff.tsv", events);
+    }
+
+    private void writeDiff(String fileName, List<Event> events) {
+        Set<String> edges = new HashSet<>();
+        for (Event event: events) {
+            if (event.getParent() != null) {
+                edges.add(getKey(event.getParent()) + "\t" + getKey(event));
+            }
+        }
+        Set<String> previousEdges = new HashSet<>();
+        for (Map.Entry<String, PreviousEvent> previousEvent: previousEvents.entrySet()) {
+            if (previousEvent.getValue().parentKey != null) {
+                previousEdges.add(previousEvent.getValue().parentKey + "\t" + previousEvent.getKey());
+            }
+        }
+        int addedCount = 0;
+        int removedCount = 0;
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("change\tparent\tchild\n");
+            for (String edge: edges) {
+                if (!previousEdges.contains(edge)) {
+                    writer.write("added\t" + edge + "\n");
+                    addedCount++;
+                }
+            }
+            for (String edge: previousEdges) {
+                if (!edges.contains(edge)) {
+                    writer.write("removed\t" + edge + "\n");
+                    removedCount++;
+                }
+            }
+        } catch (IOException ex) {
+            System.out.println("Error writing dependency diff");
+        }
+        System.out.println("Incremental crawl: " + changedElementCount + " of " + fingerprints.size() + " elements new or changed, "
+                + carriedChildCount + " children carried forward, " + completedParentCount + " parents completed without a replay, "
+                + skippedProbeCount + " probes skipped");
+        System.out.println("Dependencies: " + addedCount + " added, " + removedCount + " removed");
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,348 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Classifies the candidates after a parent event from the layout of the whole page, fetched in one
+// DOMSnapshot.captureSnapshot call. A candidate whose element is missing, has no box, is hidden, has zero size or lies
+// entirely above or left of the document is impossible and is not probed. One that is covered by another element at
+// its centre, or ignores pointer events, is deferred and probed after the interactable ones, since an earlier probe
+// may not be what uncovers it. Xpaths are resolved against the snapshot itself, and are parsed once for the crawl.
+public class LayoutPrefilter {
+    public static final int INTERACTABLE = 0;
+    public static final int DEFERRED = 1;
+    public static final int IMPOSSIBLE = 2;
+
+    private static final int GRID_CELL_SIZE = 256;
+    private static final Pattern ANCHOR = Pattern.compile("^\\(//([\\w-]+)\\[@(id|class)='([^']*)'\\]\\)\\[(\\d+)\\]");
+    private static final Pattern STEP = Pattern.compile("/([\\w-]+)\\[(\\d+)\\]");
+
+    // An xpath as the crawler generates it: /html/body or the k-th element with an id or class, then /tag[n] steps
+    private static class ParsedXpath {
+        String anchorKey;
+        int anchorIndex;
+        String[] stepTags;
+        int[] stepIndexes;
+    }
+
+    // The main document of one snapshot, with element children linked in document order
+    private static class PageLayout {
+        int[] parentIndex;
+        String[] tagNames;
+        int[] firstChild;
+        int[] nextSibling;
+        int[] layoutIndex;
+        boolean[] hasLayoutDescendant;
+        double[][] bounds;
+        String[][] styles;
+        long[] paintOrders;
+        Map<String, List<Integer>> anchors = new HashMap<>();
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        int body = -1;
+    }
+
+    private boolean requiresLayout;
+    private Map<String, ParsedXpath> parsedXpaths;
+    private long[] classCounts;
+    private int snapshotCount;
+
+    // Without requiresLayout, as when events are dispatched from a script, only missing elements are impossible
+    public LayoutPrefilter(boolean requiresLayout) {
+        this.requiresLayout = requiresLayout;
+        this.parsedXpaths = new HashMap<>();
+        this.classCounts = new long[3];
+        this.snapshotCount = 0;
+    }
+
+    // Returns the candidates worth probing from the current page, deferred candidates first. Crawls probe candidate
+    // lists from the end, so the deferred ones are probed last.
+    public List<Event> plan(ChromeDriver driver, List<Event> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        PageLayout layout = capture(driver);
+        if (layout == null) {
+            return candidates;
+        }
+        List<Event> deferredCandidates = new ArrayList<>();
+        List<Event> interactableCandidates = new ArrayList<>();
+        for (Event candidate: candidates) {
+            int candidateClass = classify(layout, candidate.getXpath());
+            classCounts[candidateClass]++;
+            if (candidateClass == DEFERRED) {
+                deferredCandidates.add(candidate);
+            } else if (candidateClass == INTERACTABLE) {
+                interactableCandidates.add(candidate);
+            }
+        }
+        int avoided = candidates.size() - deferredCandidates.size() - interactableCandidates.size();
+        System.out.println("Layout prefilter: " + interactableCandidates.size() + " interactable, " + deferredCandidates.size()
+                + " deferred, " + avoided + " impossible");
+        deferredCandidates.addAll(interactableCandidates);
+        return deferredCandidates;
+    }
+
+    private int classify(PageLayout layout, String xpath) {
+        ParsedXpath parsedXpath = parsedXpaths.computeIfAbsent(xpath, LayoutPrefilter::parse);
+        if (parsedXpath == null) {
+            // Not an xpath the crawler generates, so it is left to the probe
+            return INTERACTABLE;
+        }
+        int node = resolve(layout, parsedXpath);
+        if (node < 0) {
+            return IMPOSSIBLE;
+        }
+        if (!requiresLayout) {
+            return INTERACTABLE;
+        }
+        int box = layout.layoutIndex[node];
+        if (box < 0) {
+            // Elements with display: contents have no box of their own, but their children do
+            return layout.hasLayoutDescendant[node] ? DEFERRED : IMPOSSIBLE;
+        }
+        double[] bounds = layout.bounds[box];
+        String visibility = layout.styles[box][0];
+        if (bounds[2] <= 0 || bounds[3] <= 0 || "hidden".equals(visibility) || "collapse".equals(visibility)
+                || bounds[0] + bounds[2] <= 0 || bounds[1] + bounds[3] <= 0) {
+            return IMPOSSIBLE;
+        }
+        if ("none".equals(layout.styles[box][1]) || isCovered(layout, node, box)) {
+            return DEFERRED;
+        }
+        return INTERACTABLE;
+    }
+
+    // True when an element painted above the candidate, other than its ancestors and descendants, takes pointer events
+    // at the candidate's centre
+    private boolean isCovered(PageLayout layout, int node, int box) {
+        if (layout.paintOrders == null) {
+            return false;
+        }
+        double centreX = layout.bounds[box][0] + layout.bounds[box][2] / 2;
+        double centreY = layout.bounds[box][1] + layout.bounds[box][3] / 2;
+        List<Integer> cell = layout.grid.get(getCell(centreX, centreY));
+        if (cell == null) {
+            return false;
+        }
+        for (int other: cell) {
+            int otherBox = layout.layoutIndex[other];
+            double[] bounds = layout.bounds[otherBox];
+            if (layout.paintOrders[otherBox] > layout.paintOrders[box]
+                    && centreX >= bounds[0] && centreX < bounds[0] + bounds[2] && centreY >= bounds[1] && centreY < bounds[1] + bounds[3]
+                    && !isAncestor(layout, other, node) && !isAncestor(layout, node, other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAncestor(PageLayout layout, int ancestor, int node) {
+        for (int current = layout.parentIndex[node]; current >= 0; current = layout.parentIndex[current]) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getCell(double x, double y) {
+        return ((long) Math.floor(x / GRID_CELL_SIZE) << 32) ^ ((long) Math.floor(y / GRID_CELL_SIZE) & 0xFFFFFFFFL);
+    }
+
+    private int resolve(PageLayout layout, ParsedXpath parsedXpath) {
+        int node = layout.body;
+        if (parsedXpath.anchorKey != null) {
+            List<Integer> anchors = layout.anchors.get(parsedXpath.anchorKey);
+            node = anchors != null && parsedXpath.anchorIndex <= anchors.size() ? anchors.get(parsedXpath.anchorIndex - 1) : -1;
+        }
+        for (int step = 0; step < parsedXpath.stepTags.length && node >= 0; step++) {
+            int index = 0;
+            int child = layout.firstChild[node];
+            while (child >= 0) {
+                if (parsedXpath.stepTags[step].equals(layout.tagNames[child]) && ++index == parsedXpath.stepIndexes[step]) {
+                    break;
+                }
+                child = layout.nextSibling[child];
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static ParsedXpath parse(String xpath) {
+        ParsedXpath parsedXpath = new ParsedXpath();
+        int position;
+        if (xpath.startsWith("/html/body")) {
+            position = "/html/body".length();
+        } else {
+            Matcher anchor = ANCHOR.matcher(xpath);
+            if (!anchor.find()) {
+                return null;
+            }
+            parsedXpath.anchorKey = getAnchorKey(anchor.group(1).toLowerCase(), anchor.group(2), anchor.group(3));
+            parsedXpath.anchorIndex = Integer.parseInt(anchor.group(4));
+            position = anchor.end();
+        }
+        List<String> stepTags = new ArrayList<>();
+        List<Integer> stepIndexes = new ArrayList<>();
+        Matcher step = STEP.matcher(xpath);
+        while (position < xpath.length()) {
+            if (!step.find(position) || step.start() != position) {
+                return null;
+            }
+            stepTags.add(step.group(1).toLowerCase());
+            stepIndexes.add(Integer.parseInt(step.group(2)));
+            position = step.end();
+        }
+        parsedXpath.stepTags = stepTags.toArray(new String[0]);
+        parsedXpath.stepIndexes = stepIndexes.stream().mapToInt(Integer::intValue).toArray();
+        return parsedXpath;
+    }
+
+    private static String getAnchorKey(String tagName, String attribute, String value) {
+        return tagName + "\u0000" + attribute + "\u0000" + value;
+    }
+
+    private PageLayout capture(ChromeDriver driver) {
+        Map<String, Object> query = new HashMap<>();
+        query.put("computedStyles", Arrays.asList("visibility", "pointer-events"));
+        query.put("includePaintOrder", true);
+        Map<String, Object> snapshot;
+        try {
+            snapshot = BrowserInteractions.executeCdpCommand(driver, "DOMSnapshot.captureSnapshot", query);
+        } catch (WebDriverException ex) {
+            System.out.println("Could not capture layout, " + ex.getMessage());
+            return null;
+        }
+        snapshotCount++;
+        return buildLayout(snapshot);
+    }
+
+    private PageLayout buildLayout(Map<String, Object> snapshot) {
+        List<String> strings = (List<String>) snapshot.get("strings");
+        Map<String, Object> document = ((List<Map<String, Object>>) snapshot.get("documents")).get(0);
+        Map<String, Object> nodes = (Map<String, Object>) document.get("nodes");
+        Map<String, Object> layoutTree = (Map<String, Object>) document.get("layout");
+
+        PageLayout layout = new PageLayout();
+        List<Number> parentIndexes = (List<Number>) nodes.get("parentIndex");
+        List<Number> nodeTypes = (List<Number>) nodes.get("nodeType");
+        List<Number> nodeNames = (List<Number>) nodes.get("nodeName");
+        List<List<Number>> attributes = (List<List<Number>>) nodes.get("attributes");
+        int nodeCount = parentIndexes.size();
+        layout.parentIndex = new int[nodeCount];
+        layout.tagNames = new String[nodeCount];
+        layout.firstChild = new int[nodeCount];
+        layout.nextSibling = new int[nodeCount];
+        layout.layoutIndex = new int[nodeCount];
+        layout.hasLayoutDescendant = new boolean[nodeCount];
+        int[] lastChild = new int[nodeCount];
+        Arrays.fill(layout.firstChild, -1);
+        Arrays.fill(layout.nextSibling, -1);
+        Arrays.fill(layout.layoutIndex, -1);
+        Arrays.fill(lastChild, -1);
+
+        // Nodes come in document order, parents first. Shadow trees are invisible to XPath, so they are left unlinked.
+        boolean[] inShadowTree = new boolean[nodeCount];
+        Set<Integer> shadowRoots = getRareIndexes(nodes.get("shadowRootType"));
+        for (int node = 0; node < nodeCount; node++) {
+            int parent = parentIndexes.get(node).intValue();
+            layout.parentIndex[node] = parent;
+            inShadowTree[node] = shadowRoots.contains(node) || (parent >= 0 && inShadowTree[parent]);
+            if (nodeTypes.get(node).intValue() != 1 || inShadowTree[node]) {
+                continue;
+            }
+            String tagName = strings.get(nodeNames.get(node).intValue()).toLowerCase();
+            layout.tagNames[node] = tagName;
+            if (parent >= 0) {
+                if (lastChild[parent] < 0) {
+                    layout.firstChild[parent] = node;
+                } else {
+                    layout.nextSibling[lastChild[parent]] = node;
+                }
+                lastChild[parent] = node;
+                if (tagName.equals("body") && "html".equals(layout.tagNames[parent]) && layout.body < 0) {
+                    layout.body = node;
+                }
+            }
+            List<Number> nodeAttributes = attributes.get(node);
+            for (int i = 0; i + 1 < nodeAttributes.size(); i += 2) {
+                String attribute = strings.get(nodeAttributes.get(i).intValue());
+                if (attribute.equals("id") || attribute.equals("class")) {
+                    String value = strings.get(nodeAttributes.get(i + 1).intValue());
+                    layout.anchors.computeIfAbsent(getAnchorKey(tagName, attribute, value), key -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+
+        List<Number> nodeIndexes = (List<Number>) layoutTree.get("nodeIndex");
+        List<List<Number>> boxes = (List<List<Number>>) layoutTree.get("bounds");
+        List<List<Number>> styleIndexes = (List<List<Number>>) layoutTree.get("styles");
+        List<Number> paintOrders = (List<Number>) layoutTree.get("paintOrders");
+        int boxCount = nodeIndexes.size();
+        layout.bounds = new double[boxCount][];
+        layout.styles = new String[boxCount][];
+        layout.paintOrders = paintOrders == null ? null : new long[boxCount];
+        for (int box = 0; box < boxCount; box++) {
+            int node = nodeIndexes.get(box).intValue();
+            List<Number> bounds = boxes.get(box);
+            layout.bounds[box] = new double[]{bounds.get(0).doubleValue(), bounds.get(1).doubleValue(), bounds.get(2).doubleValue(), bounds.get(3).doubleValue()};
+            List<Number> boxStyles = styleIndexes.get(box);
+            layout.styles[box] = new String[]{boxStyles.size() > 0 ? strings.get(boxStyles.get(0).intValue()) : null,
+                    boxStyles.size() > 1 ? strings.get(boxStyles.get(1).intValue()) : null};
+            if (paintOrders != null) {
+                layout.paintOrders[box] = paintOrders.get(box).longValue();
+            }
+            // Pseudo elements and text runs come after their element's own box
+            if (layout.layoutIndex[node] < 0) {
+                layout.layoutIndex[node] = box;
+                for (int ancestor = layout.parentIndex[node]; ancestor >= 0 && !layout.hasLayoutDescendant[ancestor]; ancestor = layout.parentIndex[ancestor]) {
+                    layout.hasLayoutDescendant[ancestor] = true;
+                }
+            }
+        }
+
+        // Elements that can take pointer events are indexed by the grid cells their box overlaps
+        for (int node = 0; node < nodeCount; node++) {
+            int box = layout.layoutIndex[node];
+            if (box < 0 || layout.tagNames[node] == null) {
+                continue;
+            }
+            double[] bounds = layout.bounds[box];
+            if (bounds[2] <= 0 || bounds[3] <= 0 || "hidden".equals(layout.styles[box][0]) || "none".equals(layout.styles[box][1])) {
+                continue;
+            }
+            long firstColumn = (long) Math.floor(bounds[0] / GRID_CELL_SIZE);
+            long lastColumn = (long) Math.floor((bounds[0] + bounds[2]) / GRID_CELL_SIZE);
+            long firstRow = (long) Math.floor(bounds[1] / GRID_CELL_SIZE);
+            long lastRow = (long) Math.floor((bounds[1] + bounds[3]) / GRID_CELL_SIZE);
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                for (long row = firstRow; row <= lastRow; row++) {
+                    layout.grid.computeIfAbsent((column << 32) ^ (row & 0xFFFFFFFFL), cell -> new ArrayList<>()).add(node);
+                }
+            }
+        }
+        return layout;
+    }
+
+    private Set<Integer> getRareIndexes(Object rareData) {
+        Set<Integer> indexes = new HashSet<>();
+        if (rareData instanceof Map && ((Map) rareData).get("index") != null) {
+            for (Number index: (List<Number>) ((Map) rareData).get("index")) {
+                indexes.add(index.intValue());
+            }
+        }
+        return indexes;
+    }
+
+    public void printReport() {
+        long total = classCounts[INTERACTABLE] + classCounts[DEFERRED] + classCounts[IMPOSSIBLE];
+        System.out.println("Layout prefilter: " + snapshotCount + " snapshots, " + total + " candidates classified, "
+                + classCounts[INTERACTABLE] + " interactable, " + classCounts[DEFERRED] + " deferred, "
+                + classCounts[IMPOSSIBLE] + " probes avoided as impossible");
+    }
+}
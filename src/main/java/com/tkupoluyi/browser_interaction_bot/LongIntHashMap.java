@@ -0,0 +1,56 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.util.Arrays;
+
+// Open-addressing counter map from long keys to int values, without boxing either
+class LongIntHashMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntHashMap() {
+        keys = new long[64];
+        values = new int[64];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // Adds one to the value of key, which starts at zero, and returns the new value
+    int increment(long key) {
+        int slot = slotOf(key, keys);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slotOf(key, keys);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return ++values[slot];
+    }
+
+    private int slotOf(long key, long[] table) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != EMPTY && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
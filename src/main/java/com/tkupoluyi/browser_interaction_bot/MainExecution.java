@@ -1,26 +1,73 @@
 package com.tkupoluyi.browser_interaction_bot;
 
+import com.tkupoluyi.browser_interaction_bot.cache.ResponseCache;
 import com.tkupoluyi.browser_interaction_bot.event_handling.DefaultEventHandler;
+import com.tkupoluyi.browser_interaction_bot.event_handling.DispatchEventHandler;
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
 import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.exploration.ExplorationStrategy;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.ProbeLog;
+import com.tkupoluyi.browser_interaction_bot.metrics.PrometheusExporter;
+import com.tkupoluyi.browser_interaction_bot.readiness.SettledPageReadinessStrategy;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class MainExecution {
-    public static void main(String[] args) throws IOException, InteractionBotException {
+    public static void main(String[] rawArgs) throws IOException, InteractionBotException {
         ChromeExecution execution = null;
+        SessionPool sessionPool = null;
+        Map<String, String> options = new HashMap<>();
+        String[] args = parseOptions(rawArgs, options);
+        startMetrics(options);
+        DeadlineExecutor.setDeadlines(Long.parseLong(options.getOrDefault("deadline", "30000")), Long.parseLong(options.getOrDefault("page-deadline", "60000")));
+
+        if (options.containsKey("export-trace")) {
+            String traceFileName = options.get("export-trace");
+            TraceReader.exportJsonLines(traceFileName, args.length > 0 ? args[0] : traceFileName + ".jsonl");
+            System.exit(1);
+        }
+
+        if (options.containsKey("batch")) {
+            runBatch(args, options);
+            System.exit(1);
+        }
 
         try {
-            if (args.length <= 0) {
-                execution = new ChromeExecution("https://colorado.edu/", new DefaultEventHandler());
-            } else if (args.length <= 1) {
-                execution = new ChromeExecution(args[0], new DefaultEventHandler());
-            } else if (args.length <= 2) {
-                execution = new ChromeExecution(args[0], new DefaultEventHandler(), args[1]);
+            int workerCount = Integer.parseInt(options.getOrDefault("workers", "1"));
+            boolean headless = options.containsKey("headless");
+            boolean contexts = options.containsKey("contexts");
+            if (args.length <= 3 && workerCount > 1 && contexts) {
+                String url = args.length > 0 ? args[0] : "https://colorado.edu/";
+                String outputFileDirectory = args.length > 1 ? args[1] : "screenshots";
+                String proxyUrl = args.length > 2 ? args[2] : null;
+                sessionPool = new SessionPool(ChromeExecution.createChromeOptions(proxyUrl, headless), workerCount, true);
+                execution = new ParallelChromeExecution(url, eventHandlerFactory(options), outputFileDirectory, sessionPool, workerCount);
+            } else if (args.length <= 3 && (workerCount > 1 || headless)) {
+                String url = args.length > 0 ? args[0] : "https://colorado.edu/";
+                String outputFileDirectory = args.length > 1 ? args[1] : "screenshots";
+                String proxyUrl = args.length > 2 ? args[2] : null;
+                execution = new ParallelChromeExecution(url, eventHandlerFactory(options), outputFileDirectory, proxyUrl, headless, workerCount);
             } else if (args.length <= 3) {
-                execution = new ChromeExecution(args[0], new DefaultEventHandler(), args[1], args[2]);
+                String url = args.length > 0 ? args[0] : "https://colorado.edu/";
+                String outputFileDirectory = args.length > 1 ? args[1] : "screenshots";
+                String proxyUrl = args.length > 2 ? args[2] : null;
+                sessionPool = new SessionPool(ChromeExecution.createChromeOptions(proxyUrl, headless), 1);
+                execution = new ChromeExecution(url, eventHandlerFactory(options).get(), outputFileDirectory, sessionPool);
             } else {
-                execution = new ChromeExecutionFromTrace(args[0], new DefaultEventHandler(), args[1], args[2], args[3]);
+                // A trie replay borrows one session per worker, launched together before the replay starts
+                int sessionCount = options.getOrDefault("replay", "serial").equals("trie") ? workerCount : 1;
+                sessionPool = new SessionPool(ChromeExecution.createChromeOptions(args[2], headless), sessionCount, contexts && sessionCount > 1);
+                execution = new ChromeExecutionFromTrace(args[0], eventHandlerFactory(options).get(), args[1], sessionPool, args[3]);
             }
+            applyOptions(execution, options);
         } catch (Exception ex) {
             System.out.println("There was an error creating chrome execution");
             System.out.println(ex);
@@ -31,12 +78,181 @@ public class MainExecution {
             execution.execute();
         } catch (InteractionBotException ex) {
             System.out.println(ex.getExceptionType());
+            closeSessionPool(sessionPool);
             System.exit(9);
         } catch (Exception ex) {
+            closeSessionPool(sessionPool);
             System.exit(9);
         }
+        closeSessionPool(sessionPool);
         System.exit(1);
 
     }
 
+    private static void closeSessionPool(SessionPool sessionPool) {
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+    }
+
+    // Metrics are process wide, so they are exported once for the whole run rather than per execution
+    private static void startMetrics(Map<String, String> options) throws IOException {
+        if (options.containsKey("metrics") || options.containsKey("metrics-port")) {
+            int port = Integer.parseInt(options.getOrDefault("metrics-port", "0"));
+            long intervalMillis = Long.parseLong(options.getOrDefault("metrics-interval", "10000"));
+            String fileName = options.get("metrics");
+            new PrometheusExporter("true".equals(fileName) ? "metrics.prom" : fileName, port, intervalMillis);
+        }
+        if (options.containsKey("metrics-jfr")) {
+            Metrics.enableJfr(options.get("metrics-jfr"));
+        }
+    }
+
+    // Options are passed as --name=value (or --name for flags) and may appear anywhere among the positional arguments
+    private static String[] parseOptions(String[] rawArgs, Map<String, String> options) {
+        List<String> positional = new ArrayList<>();
+        for (String arg: rawArgs) {
+            if (arg.startsWith("--")) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    options.put(arg.substring(2), "true");
+                } else {
+                    options.put(arg.substring(2, separator), arg.substring(separator + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+        return positional.toArray(new String[0]);
+    }
+
+    // Batch mode: positional arguments are [output_root_directory] [url_of_proxy]
+    private static void runBatch(String[] args, Map<String, String> options) throws IOException {
+        String outputRootDirectory = args.length > 0 ? args[0] : "batch";
+        String proxyUrl = args.length > 1 ? args[1] : null;
+        long siteBudgetMillis = Long.parseLong(options.getOrDefault("site-budget", "0")) * 1000;
+        int sessionCount = Integer.parseInt(options.getOrDefault("sessions", "2"));
+        int maxPerOrigin = Integer.parseInt(options.getOrDefault("per-origin", "1"));
+
+        // The response cache is shared by every session, so it is attached once per browser instead of once per site
+        Map<String, String> siteOptions = new HashMap<>(options);
+        siteOptions.remove("cache");
+        BatchCrawler batchCrawler = new BatchCrawler(BatchCrawler.readSiteList(options.get("batch"), siteBudgetMillis), outputRootDirectory,
+                sessionCount, maxPerOrigin, ChromeExecution.createChromeOptions(proxyUrl, options.containsKey("headless")), options.containsKey("contexts"), eventHandlerFactory(options),
+                execution -> {
+                    try {
+                        applyOptions(execution, siteOptions);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+        if (options.containsKey("cache")) {
+            batchCrawler.setResponseCache(createResponseCache(options));
+        } else if (isSnapshotRestore(options)) {
+            batchCrawler.setResponseCache(createRestoreCache(outputRootDirectory, options));
+        }
+        batchCrawler.run();
+    }
+
+    // Actions drives events through Selenium Actions, dispatch fires them from one in-page script, and input sends
+    // them as trusted DevTools input events
+    private static Supplier<EventHandler> eventHandlerFactory(Map<String, String> options) {
+        String events = options.getOrDefault("events", "actions");
+        boolean cacheElements = options.containsKey("element-cache");
+        if (events.equals("dispatch")) {
+            return () -> new DispatchEventHandler(DispatchEventHandler.SYNTHETIC, cacheElements);
+        } else if (events.equals("input")) {
+            return () -> new DispatchEventHandler(DispatchEventHandler.INPUT, cacheElements);
+        }
+        return () -> new DefaultEventHandler(cacheElements);
+    }
+
+    private static ResponseCache createResponseCache(Map<String, String> options) throws IOException {
+        int cacheMode = options.getOrDefault("cache-mode", "record").equals("replay") ? ResponseCache.REPLAY : ResponseCache.RECORD;
+        long memoryLimitBytes = Long.parseLong(options.getOrDefault("cache-memory", "256")) * 1024 * 1024;
+        return new ResponseCache(options.get("cache"), cacheMode, memoryLimitBytes);
+    }
+
+    // Snapshot restores load the page again between sibling probes. Without --cache those loads are served from a
+    // cache recorded during the run, so only the first load of every response goes to the network.
+    private static ResponseCache createRestoreCache(String outputDirectory, Map<String, String> options) throws IOException {
+        long memoryLimitBytes = Long.parseLong(options.getOrDefault("cache-memory", "256")) * 1024 * 1024;
+        return new ResponseCache(outputDirectory + "/restore_cache", ResponseCache.RECORD, memoryLimitBytes);
+    }
+
+    private static boolean isSnapshotRestore(Map<String, String> options) {
+        return options.getOrDefault("restore", "reload").equals("snapshot");
+    }
+
+    private static void applyOptions(ChromeExecution execution, Map<String, String> options) throws IOException {
+        if (options.containsKey("cache")) {
+            execution.setResponseCache(createResponseCache(options));
+        } else if (isSnapshotRestore(options) && !options.containsKey("batch")) {
+            execution.setResponseCache(createRestoreCache(execution.outputFileDirectory, options));
+        }
+        if (options.getOrDefault("readiness", "fixed").equals("settled")) {
+            long timeout = Long.parseLong(options.getOrDefault("readiness-timeout", "10000"));
+            long quietWindow = Long.parseLong(options.getOrDefault("readiness-quiet", "500"));
+            BrowserInteractions.setReadinessStrategy(new SettledPageReadinessStrategy(timeout, quietWindow));
+        }
+        if (options.containsKey("checkpoint") || options.containsKey("resume")) {
+            String checkpointFileName = options.getOrDefault("checkpoint", "true");
+            if (checkpointFileName.equals("true")) {
+                checkpointFileName = execution.outputFileDirectory + "/checkpoint";
+            }
+            long syncIntervalMillis = Long.parseLong(options.getOrDefault("checkpoint-interval", "30000"));
+            execution.setCheckpoint(checkpointFileName, syncIntervalMillis, options.containsKey("resume"));
+        }
+        execution.setTraceFormat(options.getOrDefault("trace-format", "binary"));
+        if (execution instanceof ChromeExecutionFromTrace && options.containsKey("replay-range")) {
+            String[] range = options.get("replay-range").split("-", -1);
+            ((ChromeExecutionFromTrace) execution).setReplayRange(Integer.parseInt(range[0]), range.length > 1 && !range[1].isEmpty() ? Integer.parseInt(range[1]) : 0);
+        }
+        if (execution instanceof ChromeExecutionFromTrace && options.getOrDefault("replay", "serial").equals("trie")) {
+            int workerCount = Integer.parseInt(options.getOrDefault("workers", "1"));
+            ((ChromeExecutionFromTrace) execution).setTrieReplay(workerCount, eventHandlerFactory(options));
+        }
+        if (options.getOrDefault("screenshots", "sync").equals("async")) {
+            String format = options.getOrDefault("screenshot-format", "png");
+            int quality = Integer.parseInt(options.getOrDefault("screenshot-quality", "80"));
+            int dedupThreshold = Integer.parseInt(options.getOrDefault("screenshot-dedup", "-1"));
+            int writerThreads = Integer.parseInt(options.getOrDefault("screenshot-writers", "2"));
+            execution.setScreenshotPipeline(new ScreenshotPipeline(format, quality, dedupThreshold, writerThreads, 64));
+        }
+        execution.setExplorationStrategy(ExplorationStrategy.create(options.getOrDefault("strategy", "bfs")));
+        if (options.containsKey("state-hash")) {
+            execution.setStateAbstraction(new StateAbstraction(options.getOrDefault("state-ignore", StateAbstraction.DEFAULT_IGNORE_SELECTOR),
+                    options.getOrDefault("state-ignore-text", StateAbstraction.DEFAULT_IGNORE_TEXT)));
+        }
+        if (options.containsKey("coverage")) {
+            execution.setCoverageCurve(execution.outputFileDirectory + "/coverage.tsv");
+        }
+        if (options.containsKey("incremental") && !(execution instanceof ChromeExecutionFromTrace)) {
+            String previousDirectory = options.get("incremental");
+            execution.setIncrementalCrawl(new IncrementalCrawl(previousDirectory.equals("true") ? null : previousDirectory,
+                    execution.outputFileDirectory, options.getOrDefault("state-ignore-text", StateAbstraction.DEFAULT_IGNORE_TEXT)));
+        }
+        if (options.containsKey("probe-log")) {
+            execution.setProbeLog(new ProbeLog(execution.outputFileDirectory + "/probes.jsonl"));
+        }
+        if (options.getOrDefault("planner", "exhaustive").equals("incremental")) {
+            execution.setProbePlanner(new ProbePlanner());
+        }
+        if (options.containsKey("layout-prefilter")) {
+            execution.setLayoutPrefilter(new LayoutPrefilter(!options.getOrDefault("events", "actions").equals("dispatch")));
+        }
+        execution.setGraphFormats(Arrays.asList(options.getOrDefault("graph-format", "dot").split(",")));
+        execution.setSnapshotRestore(isSnapshotRestore(options));
+        String discovery = options.getOrDefault("discovery", "dfs");
+        if (discovery.equals("batched")) {
+            execution.setDiscoveryMode(HTMLDocumentUtil.BATCHED_DISCOVERY);
+        } else if (discovery.equals("streaming")) {
+            execution.setDiscoveryMode(HTMLDocumentUtil.STREAMING_DISCOVERY);
+        } else if (discovery.equals("compare")) {
+            execution.setDiscoveryMode(HTMLDocumentUtil.COMPARE_DISCOVERY);
+        } else {
+            execution.setDiscoveryMode(HTMLDocumentUtil.DFS_DISCOVERY);
+        }
+    }
+
 }
@@ -0,0 +1,135 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.*;
+
+// The state a parent's chain starts from, captured right after the page load: the url, web storage and cookies.
+// Restoring writes storage and cookies back and loads the page again, so the DOM, script state, listeners and timers
+// a probe changed are all rebuilt from scratch before the caller replays the chain. Reloads are served from the
+// response cache, so they never touch the network. Once the chain has run, the page fingerprint (DOM and form control
+// values) is recorded, and a restore is verified when the replayed page matches it again. IndexedDB, Cache Storage and
+// service workers are not reverted.
+public class PageStateSnapshot {
+    private static final String FINGERPRINT_SCRIPT =
+            "var hash = 0x811c9dc5;" +
+            "function add(text) {" +
+            "  for (var i = 0; i < text.length; i++) { hash ^= text.charCodeAt(i); hash = Math.imul(hash, 0x01000193); }" +
+            "}" +
+            "add(document.documentElement.outerHTML);" +
+            "var controls = document.querySelectorAll('input, textarea, select');" +
+            "for (var i = 0; i < controls.length; i++) { add(String(controls[i].value)); add(controls[i].checked ? '1' : '0'); }" +
+            "return (hash >>> 0).toString(16);";
+
+    private static final String CAPTURE_SCRIPT =
+            "function readStorage(storage) {" +
+            "  try { var entries = {}; for (var i = 0; i < storage.length; i++) { entries[storage.key(i)] = storage.getItem(storage.key(i)); }" +
+            "  return JSON.stringify(entries); } catch (e) { return null; }" +
+            "}" +
+            "return {url: location.href, origin: location.origin," +
+            " localStorage: readStorage(window.localStorage), sessionStorage: readStorage(window.sessionStorage)};";
+
+    // Storage belongs to the origin of the current document, so it is only written from a page of the same origin
+    private static final String RESTORE_STORAGE_SCRIPT =
+            "if (location.origin !== arguments[0]) { return false; }" +
+            "function writeStorage(storage, serialized) {" +
+            "  if (serialized === null) { return; }" +
+            "  try { var entries = JSON.parse(serialized); storage.clear(); for (var key in entries) { storage.setItem(key, entries[key]); } } catch (e) { }" +
+            "}" +
+            "writeStorage(window.localStorage, arguments[1]);" +
+            "writeStorage(window.sessionStorage, arguments[2]);" +
+            "return true;";
+
+    // The fields of Network.getAllCookies results that Network.setCookies accepts back
+    private static final List<String> COOKIE_FIELDS = Arrays.asList("name", "value", "domain", "path", "secure", "httpOnly", "sameSite", "priority");
+
+    private String url;
+    private String origin;
+    private String localStorage;
+    private String sessionStorage;
+    private List<Map<String, Object>> cookies;
+    private String fingerprint;
+
+    private PageStateSnapshot(Map state, List<Map<String, Object>> cookies) {
+        this.url = (String) state.get("url");
+        this.origin = (String) state.get("origin");
+        this.localStorage = (String) state.get("localStorage");
+        this.sessionStorage = (String) state.get("sessionStorage");
+        this.cookies = cookies;
+    }
+
+    // Captures the loaded page before any event of the chain is triggered
+    public static PageStateSnapshot capture(ChromeDriver driver) {
+        try {
+            Map state = DeadlineExecutor.call("capture_state", () -> (Map) driver.executeScript(CAPTURE_SCRIPT));
+            List<Map<String, Object>> cookies = new ArrayList<>();
+            List<Map<String, Object>> allCookies = (List<Map<String, Object>>) BrowserInteractions.executeCdpCommand(driver, "Network.getAllCookies", new HashMap<>()).get("cookies");
+            for (Map<String, Object> cookie: allCookies) {
+                Map<String, Object> cookieParam = new HashMap<>();
+                for (String field: COOKIE_FIELDS) {
+                    if (cookie.get(field) != null) {
+                        cookieParam.put(field, cookie.get(field));
+                    }
+                }
+                if (!Boolean.TRUE.equals(cookie.get("session"))) {
+                    cookieParam.put("expires", cookie.get("expires"));
+                }
+                cookies.add(cookieParam);
+            }
+            return new PageStateSnapshot(state, cookies);
+        } catch (WebDriverException ex) {
+            System.out.println("Could not capture page state, " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Records the fingerprint of the page after the chain, which later restores are verified against
+    public void recordChainState(ChromeDriver driver) {
+        fingerprint = getFingerprint(driver);
+    }
+
+    private static String getFingerprint(ChromeDriver driver) {
+        try {
+            return DeadlineExecutor.call("fingerprint", () -> (String) driver.executeScript(FINGERPRINT_SCRIPT));
+        } catch (WebDriverException ex) {
+            return null;
+        }
+    }
+
+    // Writes storage and cookies back and loads the page again, ready for the chain to be replayed. Returns false when
+    // the state could not be written back, in which case the caller falls back to a plain reload and replay.
+    public boolean revert(ChromeDriver driver) {
+        try {
+            if (!restoreStorage(driver)) {
+                // The probe left the origin, whose storage can only be written from one of its own pages
+                BrowserInteractions.openPage(driver, url);
+                if (!restoreStorage(driver)) {
+                    return false;
+                }
+            }
+            BrowserInteractions.executeCdpCommand(driver, "Network.clearBrowserCookies", new HashMap<>());
+            Map<String, Object> query = new HashMap<>();
+            query.put("cookies", cookies);
+            BrowserInteractions.executeCdpCommand(driver, "Network.setCookies", query);
+            // Loading the same url with a fragment would only scroll the current document
+            if (url.contains("#")) {
+                BrowserInteractions.openPage(driver, "about:blank");
+            }
+            BrowserInteractions.openPage(driver, url);
+            return true;
+        } catch (WebDriverException ex) {
+            System.out.println("Could not restore page state, " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private boolean restoreStorage(ChromeDriver driver) {
+        return Boolean.TRUE.equals(DeadlineExecutor.call("restore_storage", () -> driver.executeScript(RESTORE_STORAGE_SCRIPT, origin, localStorage, sessionStorage)));
+    }
+
+    // True when the page the chain was replayed on matches the one recorded after the chain
+    public boolean matches(ChromeDriver driver) {
+        return fingerprint != null && fingerprint.equals(getFingerprint(driver));
+    }
+}
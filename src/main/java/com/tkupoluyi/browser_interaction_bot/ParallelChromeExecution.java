@@ -0,0 +1,214 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.cache.ResponseCache;
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+public class ParallelChromeExecution extends ChromeExecution {
+    private Supplier<EventHandler> eventHandlerFactory;
+    private List<ChromeDriver> workerDrivers;
+    private List<CrawlWorker> workers;
+    private List<Thread> workerThreads;
+    private BlockingQueue<ProbeTask> taskQueue;
+
+    ParallelChromeExecution(String url, Supplier<EventHandler> eventHandlerFactory, String outputFileDirectory, String proxyUrl, boolean headless, int workerCount) {
+        super(url, eventHandlerFactory.get(), outputFileDirectory, proxyUrl, headless);
+        this.eventHandlerFactory = eventHandlerFactory;
+        this.taskQueue = new LinkedBlockingQueue<>();
+        this.workers = new ArrayList<>();
+        this.workerThreads = new ArrayList<>();
+        // The coordinating driver doubles as the first worker, since it is idle while probes are running
+        this.workerDrivers = new ArrayList<>();
+        this.workerDrivers.add(driver);
+        for (int i = 1; i < workerCount; i++) {
+            workerDrivers.add(new ChromeDriver(ChromeDriverService.createDefaultService(), chromeOptions));
+        }
+    }
+
+    // Borrows the coordinating driver and every worker driver from the pool, such as the browser contexts of one Chrome
+    ParallelChromeExecution(String url, Supplier<EventHandler> eventHandlerFactory, String outputFileDirectory, SessionPool sessionPool, int workerCount) {
+        super(url, eventHandlerFactory.get(), outputFileDirectory, sessionPool);
+        this.eventHandlerFactory = eventHandlerFactory;
+        this.taskQueue = new LinkedBlockingQueue<>();
+        this.workers = new ArrayList<>();
+        this.workerThreads = new ArrayList<>();
+        this.workerDrivers = new ArrayList<>();
+        this.workerDrivers.add(driver);
+        for (int i = 1; i < workerCount; i++) {
+            workerDrivers.add(sessionPool.borrow());
+        }
+    }
+
+    @Override
+    public void setResponseCache(ResponseCache responseCache) {
+        super.setResponseCache(responseCache);
+        for (int i = 1; i < workerDrivers.size(); i++) {
+            responseCache.attach(workerDrivers.get(i));
+        }
+    }
+
+    private void startWorkers() {
+        for (int i = 0; i < workerDrivers.size(); i++) {
+            EventHandler workerEventHandler = i == 0 ? eventHandler : eventHandlerFactory.get();
+            CrawlWorker worker = new CrawlWorker(workerDrivers.get(i), workerEventHandler, url, taskQueue);
+            worker.setSnapshotRestore(snapshotRestore);
+            worker.setProbeLog(probeLog);
+            worker.setMeasureChildren(explorationStrategy.usesFeatures());
+            worker.setStateAbstraction(stateAbstraction);
+            worker.setRelauncher(this::relaunchWorker);
+            Thread workerThread = new Thread(worker, "crawl-worker-" + i);
+            workerThread.setDaemon(true);
+            workers.add(worker);
+            workerThreads.add(workerThread);
+            workerThread.start();
+        }
+    }
+
+    // Relaunches the hung browser of a worker. The first worker shares the coordinating driver, which follows it.
+    private synchronized ChromeDriver relaunchWorker(ChromeDriver hungDriver) {
+        ChromeDriver freshDriver = relaunch(hungDriver);
+        workerDrivers.set(workerDrivers.indexOf(hungDriver), freshDriver);
+        if (hungDriver == driver) {
+            driver = freshDriver;
+        }
+        return freshDriver;
+    }
+
+    @Override
+    protected void replaceDriver() {
+        workers.get(0).setDriver(relaunchWorker(driver));
+    }
+
+    @Override
+    protected void closeTools() {
+        for (Thread workerThread: workerThreads) {
+            workerThread.interrupt();
+        }
+        for (int i = 1; i < workerDrivers.size(); i++) {
+            if (sessionPool != null) {
+                sessionPool.release(workerDrivers.get(i));
+            } else {
+                workerDrivers.get(i).quit();
+            }
+        }
+        super.closeTools();
+    }
+
+    @Override
+    public Event execute() throws InteractionBotException {
+        this.url = BrowserInteractions.openPage(driver, url);
+        CrawlState state = initializeCrawlState();
+        LinkedList<Event> eventList = state.getEventList();
+        Event baseEvent = state.getBaseEvent();
+        Queue<Event> eventQueue = state.getEventQueue();
+        System.out.println("Workers: "+workerDrivers.size());
+        startWorkers();
+
+        try {
+            while (!eventQueue.isEmpty() && !isOverBudget()) {
+                Event parentEvent = eventQueue.poll();
+                if (carryForward(parentEvent, eventList, eventQueue)) {
+                    continue;
+                }
+                crawlParent(parentEvent, eventList, eventQueue);
+            }
+        } finally {
+            for (Thread workerThread: workerThreads) {
+                workerThread.interrupt();
+            }
+        }
+
+        for (Event i: eventList) {
+            System.out.println(i.getEventType()+ " " + i.getXpath());
+        }
+        System.out.println("Complete");
+        printBudgetReport(eventQueue);
+        BrowserInteractions.getReadinessReport().print();
+        for (CrawlWorker worker: workers) {
+            verifiedRestoreCount += worker.getVerifiedRestoreCount();
+            divergedRestoreCount += worker.getDivergedRestoreCount();
+            fallbackReloadCount += worker.getFallbackReloadCount();
+        }
+        printRestoreReport();
+        printPlannerReport();
+        printDeadlineReport();
+        closeTools();
+        return baseEvent;
+    }
+
+    // The parent state is built on the coordinating driver, then its probes are spread over the workers
+    @Override
+    protected void processParent(Event parentEvent, LinkedList<Event> eventList, Queue<Event> eventQueue) throws InteractionBotException {
+        BrowserInteractions.openPage(driver, url);
+        BrowserInteractions.scrollToTop(driver);
+        PageStateSnapshot parentSnapshot = snapshotRestore ? PageStateSnapshot.capture(driver) : null;
+        if (probePlanner != null) {
+            probePlanner.startRecording(driver);
+        }
+        replayEventChain(parentEvent);
+        long parentElementCount = measureParentState(parentEvent);
+
+        recordParent(parentEvent);
+
+        if (!BrowserInteractions.getCurrentUrl(driver).equals(url)) {
+            recordProcessed(parentEvent);
+            workers.get(0).setCurrentParent(null, null);
+            return;
+        }
+        if (parentSnapshot != null) {
+            parentSnapshot.recordChainState(driver);
+        }
+        workers.get(0).setCurrentParent(parentEvent, parentSnapshot);
+
+        // Probes are queued in the same reverse order as the serial crawl, so children keep the same order
+        List<Event> plannedCandidates = planCandidates(parentEvent, eventList);
+        if (isOverBudget()) {
+            requeueUnfinished(parentEvent, eventQueue);
+            return;
+        }
+        List<ProbeTask> batch = new ArrayList<>();
+        CountDownLatch batchLatch = new CountDownLatch(plannedCandidates.size());
+        ListIterator<Event> candidates = plannedCandidates.listIterator(plannedCandidates.size());
+        while (candidates.hasPrevious()) {
+            batch.add(new ProbeTask(parentEvent, candidates.previous(), batchLatch));
+        }
+        taskQueue.addAll(batch);
+        try {
+            batchLatch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InteractionBotException(InteractionBotException.UNSPECIFIED_EXCEPTION, ex.getMessage());
+        }
+
+        Set<Event> claimedEvents = new HashSet<>();
+        for (ProbeTask task: batch) {
+            if (task.getFailureType() == InteractionBotException.UNREACHEABLE_BROWSER) {
+                throw new InteractionBotException(InteractionBotException.UNREACHEABLE_BROWSER);
+            }
+            if (task.getFailureType() == InteractionBotException.DEADLINE_EXCEEDED) {
+                dropHungCandidate(task.getCandidateEvent(), eventList);
+            }
+            if (task.isTriggered()) {
+                observeChild(task.getCandidateEvent(), task.getChildMeasures(), parentElementCount);
+                boolean knownState = reachesKnownState(task.getCandidateEvent(), task.getChildStateHash());
+                parentEvent.addChild(task.getCandidateEvent());
+                recordChild(parentEvent, task.getCandidateEvent());
+                if (!knownState) {
+                    eventQueue.add(task.getCandidateEvent());
+                }
+                claimedEvents.add(task.getCandidateEvent());
+            }
+        }
+        eventList.removeIf(claimedEvents::contains);
+
+        recordProcessed(parentEvent);
+    }
+}
@@ -0,0 +1,243 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.*;
+
+// Decides which remaining candidates are worth probing after a parent event. Every candidate still in the event list
+// already failed from the base page, so it can only succeed now if its element appeared, changed visibility or
+// enabled state, sits in a subtree that was added or had its attributes changed since the page was loaded, or stopped
+// (or started) being the topmost element at its centre, as when an overlay or cookie banner in a sibling subtree was
+// removed. Elements outside the viewport cannot be hit-tested, so they count as changed whenever a fixed or sticky
+// element present at load was removed or hidden. Listeners in subtrees added since the load are looked up again with
+// DOMDebugger.getEventListeners, and events on elements the base page did not have are offered as extra candidates.
+public class ProbePlanner {
+    private static final int MISSING = 0;
+    private static final int HIT_UNKNOWN = 0;
+    // Bounds the DevTools round-trips of the listener re-scan on pages that rebuild large parts of the DOM
+    private static final int MAX_RESCAN_ROOTS = 50;
+    private static final int MAX_RESCAN_NODES = 200;
+
+    private static final String RECORD_MUTATIONS_SCRIPT =
+            "window.__bibMutations = new Set();" +
+            "window.__bibAddedNodes = [];" +
+            "window.__bibOverlays = [];" +
+            "var walker = document.createTreeWalker(document.body || document.documentElement, NodeFilter.SHOW_ELEMENT);" +
+            "for (var node = walker.currentNode; node; node = walker.nextNode()) {" +
+            "  var position = window.getComputedStyle(node).position;" +
+            "  if (position === 'fixed' || position === 'sticky') { window.__bibOverlays.push(node); }" +
+            "}" +
+            "if (window.__bibMutationObserver) { window.__bibMutationObserver.disconnect(); }" +
+            "window.__bibMutationObserver = new MutationObserver(function(records) {" +
+            "  records.forEach(function(record) {" +
+            "    if (record.type === 'attributes') { window.__bibMutations.add(record.target); }" +
+            "    record.addedNodes.forEach(function(node) { window.__bibMutations.add(node); window.__bibAddedNodes.push(node); });" +
+            "  });" +
+            "});" +
+            "window.__bibMutationObserver.observe(document, {subtree: true, childList: true, attributes: true});";
+
+    // Returns one code per xpath: availability (0 missing, 1 hidden or disabled, 2 available) times eight, plus the
+    // hit test at the element's centre (0 outside the viewport, 1 covered by another element, 2 topmost) times two,
+    // plus one when the element or one of its ancestors was mutated. Also reports whether a fixed or sticky element
+    // present at load has since been removed or hidden.
+    private static final String CANDIDATE_STATE_SCRIPT =
+            "var xpaths = arguments[0], mutations = window.__bibMutations || new Set(), states = [];" +
+            "for (var i = 0; i < xpaths.length; i++) {" +
+            "  var element = null;" +
+            "  try { element = document.evaluate(xpaths[i], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; } catch (e) { }" +
+            "  if (!element) { states.push(0); continue; }" +
+            "  var rect = element.getBoundingClientRect(), style = window.getComputedStyle(element);" +
+            "  var available = rect.width > 0 && rect.height > 0 && style.visibility !== 'hidden' && style.display !== 'none' && !element.disabled;" +
+            "  var x = rect.left + rect.width / 2, y = rect.top + rect.height / 2, hit = 0;" +
+            "  if (x >= 0 && y >= 0 && x < window.innerWidth && y < window.innerHeight) {" +
+            "    var top = document.elementFromPoint(x, y);" +
+            "    hit = top && (top === element || element.contains(top)) ? 2 : 1;" +
+            "  }" +
+            "  var mutated = false;" +
+            "  for (var node = element; node && !mutated; node = node.parentNode) { mutated = mutations.has(node); }" +
+            "  states.push((available ? 2 : 1) * 8 + hit * 2 + (mutated ? 1 : 0));" +
+            "}" +
+            "var overlaysChanged = (window.__bibOverlays || []).some(function(overlay) {" +
+            "  if (!overlay.isConnected) { return true; }" +
+            "  var rect = overlay.getBoundingClientRect(), style = window.getComputedStyle(overlay);" +
+            "  return rect.width === 0 || rect.height === 0 || style.visibility === 'hidden' || style.display === 'none';" +
+            "});" +
+            "return {states: states, overlaysChanged: overlaysChanged};";
+
+    // Keeps the topmost connected elements added since the load as the roots of the listener re-scan, and marks the
+    // elements the base page's events resolve to so their listeners are not offered again
+    private static final String PREPARE_RESCAN_SCRIPT =
+            "var xpaths = arguments[0], limit = arguments[1], known = new Set(), roots = [];" +
+            "for (var i = 0; i < xpaths.length; i++) {" +
+            "  try { var element = document.evaluate(xpaths[i], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; if (element) { known.add(element); } } catch (e) { }" +
+            "}" +
+            "(window.__bibAddedNodes || []).forEach(function(node) {" +
+            "  if (node.nodeType !== 1 || !node.isConnected || !document.body || !document.body.contains(node)) { return; }" +
+            "  if (roots.some(function(root) { return root.contains(node); })) { return; }" +
+            "  roots = roots.filter(function(root) { return !node.contains(root); });" +
+            "  roots.push(node);" +
+            "});" +
+            "window.__bibKnownElements = known;" +
+            "window.__bibRescanRoots = roots.slice(0, limit);" +
+            "return window.__bibRescanRoots.length;";
+
+    // Builds the positional xpath HTMLDocumentUtil would give an element without an id or class, or returns null for
+    // elements the base page already had events on and for those the discovery walk never enters
+    private static final String XPATH_FUNCTION =
+            "function() {" +
+            "  if (window.__bibKnownElements && window.__bibKnownElements.has(this)) { return null; }" +
+            "  var path = '';" +
+            "  for (var node = this; node !== document.body; node = node.parentElement) {" +
+            "    if (!node || ['link', 'script', 'style', 'svg', 'img'].indexOf(node.localName) >= 0) { return null; }" +
+            "    var index = 1;" +
+            "    for (var sibling = node.previousElementSibling; sibling; sibling = sibling.previousElementSibling) {" +
+            "      if (sibling.localName === node.localName) { index++; }" +
+            "    }" +
+            "    path = '/' + node.localName + '[' + index + ']' + path;" +
+            "  }" +
+            "  return '/html/body' + path;" +
+            "}";
+
+    private Map<Event, Integer> baselineAvailability;
+    private Map<Event, Integer> baselineHits;
+    private List<String> baselineXpaths;
+    private Map<String, Event> discoveredEvents;
+    private int plannedCount;
+    private int skippedCount;
+    private int discoveredCount;
+
+    public ProbePlanner() {
+        this.baselineAvailability = new HashMap<>();
+        this.baselineHits = new HashMap<>();
+        this.baselineXpaths = new ArrayList<>();
+        this.discoveredEvents = new HashMap<>();
+        this.plannedCount = 0;
+        this.skippedCount = 0;
+        this.discoveredCount = 0;
+    }
+
+    public void startRecording(ChromeDriver driver) {
+        try {
+            driver.executeScript(RECORD_MUTATIONS_SCRIPT);
+        } catch (WebDriverException ex) {
+            System.out.println("Could not record mutations, " + ex.getMessage());
+        }
+    }
+
+    // Returns the candidates to probe from the current page state, in the order given, followed by the events on
+    // elements added since the load
+    public List<Event> plan(ChromeDriver driver, Event parentEvent, List<Event> candidates) {
+        Map<String, Object> candidateStates = getCandidateStates(driver, candidates);
+        if (candidateStates == null) {
+            return candidates;
+        }
+        List<Long> states = (List<Long>) candidateStates.get("states");
+        boolean overlaysChanged = Boolean.TRUE.equals(candidateStates.get("overlaysChanged"));
+        boolean isBaseline = parentEvent.getParent() == null;
+        List<Event> plannedCandidates = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Event candidate = candidates.get(i);
+            int availability = (int) (states.get(i) / 8);
+            int hit = (int) (states.get(i) % 8 / 2);
+            boolean mutated = states.get(i) % 2 == 1;
+            if (isBaseline) {
+                baselineAvailability.put(candidate, availability);
+                baselineHits.put(candidate, hit);
+                baselineXpaths.add(candidate.getXpath());
+                plannedCandidates.add(candidate);
+            } else if (availability != MISSING && (mutated || !Integer.valueOf(availability).equals(baselineAvailability.get(candidate))
+                    || isHitChanged(baselineHits.get(candidate), hit, overlaysChanged))) {
+                plannedCandidates.add(candidate);
+            }
+        }
+        int skipped = candidates.size() - plannedCandidates.size();
+        plannedCount += plannedCandidates.size();
+        skippedCount += skipped;
+        List<Event> addedEvents = isBaseline ? new ArrayList<>() : discoverAddedEvents(driver);
+        plannedCandidates.addAll(addedEvents);
+        System.out.println("Probing " + plannedCandidates.size() + " of " + (candidates.size() + addedEvents.size()) + " candidates, skipped " + skipped
+                + ", " + addedEvents.size() + " on added elements");
+        return plannedCandidates;
+    }
+
+    // A candidate whose centre was covered at load and is now topmost (or the reverse) may now receive the event. When
+    // either hit test fell outside the viewport, a removed or hidden overlay is the only sign left.
+    private boolean isHitChanged(Integer baselineHit, int hit, boolean overlaysChanged) {
+        if (baselineHit == null || baselineHit == HIT_UNKNOWN || hit == HIT_UNKNOWN) {
+            return overlaysChanged;
+        }
+        return baselineHit != hit;
+    }
+
+    private Map<String, Object> getCandidateStates(ChromeDriver driver, List<Event> candidates) {
+        List<String> xpaths = new ArrayList<>();
+        for (Event candidate: candidates) {
+            xpaths.add(candidate.getXpath());
+        }
+        try {
+            Map<String, Object> candidateStates = (Map<String, Object>) driver.executeScript(CANDIDATE_STATE_SCRIPT, xpaths);
+            return ((List<Long>) candidateStates.get("states")).size() == candidates.size() ? candidateStates : null;
+        } catch (WebDriverException ex) {
+            System.out.println("Could not plan probes, " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Re-runs DOMDebugger.getEventListeners on every subtree added since the load, and turns the listeners on elements
+    // the base page did not have into events. An event found again under a later parent is offered again until one of
+    // its probes succeeds, like the events of the base page.
+    private List<Event> discoverAddedEvents(ChromeDriver driver) {
+        List<Event> addedEvents = new ArrayList<>();
+        try {
+            long rootCount = (Long) driver.executeScript(PREPARE_RESCAN_SCRIPT, baselineXpaths, MAX_RESCAN_ROOTS);
+            Map<Object, List<String>> listenerTypes = new LinkedHashMap<>();
+            for (int i = 0; i < rootCount; i++) {
+                Map<String, Object> rootQuery = new HashMap<>();
+                rootQuery.put("expression", "window.__bibRescanRoots[" + i + "]");
+                Map root = (Map) BrowserInteractions.executeCdpCommand(driver, "Runtime.evaluate", rootQuery).get("result");
+                Map<String, Object> listenerQuery = new HashMap<>();
+                listenerQuery.put("objectId", root.get("objectId"));
+                listenerQuery.put("depth", -1);
+                List<Map> listeners = (List<Map>) BrowserInteractions.executeCdpCommand(driver, "DOMDebugger.getEventListeners", listenerQuery).get("listeners");
+                for (Map listener: listeners) {
+                    if (listener.get("backendNodeId") != null && (listenerTypes.size() < MAX_RESCAN_NODES || listenerTypes.containsKey(listener.get("backendNodeId")))) {
+                        listenerTypes.computeIfAbsent(listener.get("backendNodeId"), k -> new ArrayList<>()).add((String) listener.get("type"));
+                    }
+                }
+            }
+            for (Map.Entry<Object, List<String>> entry: listenerTypes.entrySet()) {
+                String xpath = getAddedElementXpath(driver, entry.getKey());
+                if (xpath == null) {
+                    continue;
+                }
+                for (String type: entry.getValue()) {
+                    Event event = discoveredEvents.computeIfAbsent(type + " " + xpath, k -> new Event(type, xpath));
+                    if (event.getParent() == null && !addedEvents.contains(event)) {
+                        addedEvents.add(event);
+                    }
+                }
+            }
+        } catch (WebDriverException ex) {
+            System.out.println("Could not re-scan listeners, " + ex.getMessage());
+        }
+        discoveredCount += addedEvents.size();
+        return addedEvents;
+    }
+
+    private String getAddedElementXpath(ChromeDriver driver, Object backendNodeId) {
+        Map<String, Object> resolveQuery = new HashMap<>();
+        resolveQuery.put("backendNodeId", backendNodeId);
+        Map object = (Map) BrowserInteractions.executeCdpCommand(driver, "DOM.resolveNode", resolveQuery).get("object");
+        Map<String, Object> callQuery = new HashMap<>();
+        callQuery.put("objectId", object.get("objectId"));
+        callQuery.put("functionDeclaration", XPATH_FUNCTION);
+        callQuery.put("returnByValue", true);
+        Map result = (Map) BrowserInteractions.executeCdpCommand(driver, "Runtime.callFunctionOn", callQuery).get("result");
+        return result.get("value") instanceof String ? (String) result.get("value") : null;
+    }
+
+    public void printReport() {
+        System.out.println("Probe planner: " + plannedCount + " probes planned, " + skippedCount + " skipped, " + discoveredCount + " on elements added after the load");
+    }
+}
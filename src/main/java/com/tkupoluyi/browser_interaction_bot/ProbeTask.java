@@ -0,0 +1,67 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.util.concurrent.CountDownLatch;
+
+public class ProbeTask {
+    private Event parentEvent;
+    private Event candidateEvent;
+    private CountDownLatch batchLatch;
+    private volatile boolean triggered;
+    private volatile int failureType;
+    private volatile long[] childMeasures;
+    private volatile String childStateHash;
+    private boolean completed;
+
+    ProbeTask(Event parentEvent, Event candidateEvent, CountDownLatch batchLatch) {
+        this.parentEvent = parentEvent;
+        this.candidateEvent = candidateEvent;
+        this.batchLatch = batchLatch;
+        this.triggered = false;
+        this.failureType = 0;
+    }
+
+    public Event getParentEvent() {
+        return parentEvent;
+    }
+
+    public Event getCandidateEvent() {
+        return candidateEvent;
+    }
+
+    public boolean isTriggered() {
+        return triggered;
+    }
+
+    public int getFailureType() {
+        return failureType;
+    }
+
+    // The page measures taken right after the candidate fired, null unless the worker measures children
+    public long[] getChildMeasures() {
+        return childMeasures;
+    }
+
+    void setChildMeasures(long[] childMeasures) {
+        this.childMeasures = childMeasures;
+    }
+
+    // The state hash of the page right after the candidate fired, null unless the worker hashes states
+    public String getChildStateHash() {
+        return childStateHash;
+    }
+
+    void setChildStateHash(String childStateHash) {
+        this.childStateHash = childStateHash;
+    }
+
+    // Only the first completion counts, later ones are ignored
+    synchronized void complete(boolean triggered, int failureType) {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        this.triggered = triggered;
+        this.failureType = failureType;
+        batchLatch.countDown();
+    }
+}
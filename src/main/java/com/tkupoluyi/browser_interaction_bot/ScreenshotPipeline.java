@@ -0,0 +1,228 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Captures frames with Page.captureScreenshot on the calling thread and hands disk writes to a bounded background
+// executor. When the queue is full the caller writes the frame itself, which throttles the crawl instead of buffering
+// frames without limit. Frames within dedupThreshold bits of a recent frame's difference hash are not written again,
+// and the skipped screenshot is mapped to the original in a duplicates file. Hashing and matching happen on the
+// calling thread, so frames are compared in capture order; a duplicate is only mapped once its original's write has
+// succeeded, and is written itself when that write failed.
+public class ScreenshotPipeline {
+    private static final int RECENT_FRAME_LIMIT = 64;
+    private static final Timer captureTimer = Metrics.timer("screenshot_capture");
+    private static final Timer writeTimer = Metrics.timer("screenshot_write");
+
+    private String format;
+    private int quality;
+    private int dedupThreshold;
+    private ThreadPoolExecutor writeExecutor;
+    private LinkedHashMap<String, RecentFrame> recentFrames;
+    private FileWriter duplicatesWriter;
+    private String duplicatesFileName;
+    private AtomicInteger capturedCount;
+    private AtomicInteger duplicateCount;
+    private AtomicLong captureMillis;
+    private AtomicLong writeMillis;
+
+    // A frame kept for matching, whose file only exists once written completes with true
+    private static class RecentFrame {
+        private String fileName;
+        private long hash;
+        private CompletableFuture<Boolean> written = new CompletableFuture<>();
+
+        RecentFrame(String fileName, long hash) {
+            this.fileName = fileName;
+            this.hash = hash;
+        }
+    }
+
+    public ScreenshotPipeline(String format, int quality, int dedupThreshold, int writerThreads, int queueCapacity) {
+        this.format = format;
+        this.quality = quality;
+        this.dedupThreshold = dedupThreshold;
+        this.writeExecutor = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+        this.recentFrames = new LinkedHashMap<>(16, 0.75f, true);
+        this.capturedCount = new AtomicInteger();
+        this.duplicateCount = new AtomicInteger();
+        this.captureMillis = new AtomicLong();
+        this.writeMillis = new AtomicLong();
+    }
+
+    public void screenshot(ChromeDriver driver, String fileName) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> query = new HashMap<>();
+        query.put("format", format);
+        if (!format.equals("png")) {
+            query.put("quality", quality);
+        }
+        String encodedFrame;
+        try {
+            encodedFrame = (String) BrowserInteractions.executeCdpCommand(driver, "Page.captureScreenshot", query).get("data");
+        } catch (WebDriverException ex) {
+            System.out.println(ex.getMessage());
+            System.out.println("Error in screenshot");
+            return;
+        }
+        capturedCount.incrementAndGet();
+        captureMillis.addAndGet(System.currentTimeMillis() - start);
+        captureTimer.record((System.currentTimeMillis() - start) * 1000000);
+        byte[] frame = Base64.getDecoder().decode(encodedFrame);
+        String outputFileName = fileName + "." + (format.equals("jpeg") ? "jpg" : format);
+        RecentFrame recentFrame = null;
+        RecentFrame originalFrame = null;
+        if (dedupThreshold >= 0) {
+            Long frameHash = differenceHash(frame);
+            if (frameHash != null) {
+                synchronized (recentFrames) {
+                    originalFrame = findDuplicate(frameHash);
+                    if (originalFrame == null) {
+                        recentFrame = remember(outputFileName, frameHash);
+                    }
+                }
+            }
+        }
+        RecentFrame registeredFrame = recentFrame;
+        if (originalFrame == null) {
+            writeExecutor.execute(() -> write(frame, outputFileName, registeredFrame));
+        } else {
+            RecentFrame original = originalFrame;
+            writeExecutor.execute(() -> writeDuplicate(frame, outputFileName, original, fileName));
+        }
+    }
+
+    // Completes the frame's registration with the outcome of the write, and forgets the frame when the write failed
+    private void write(byte[] frame, String outputFileName, RecentFrame recentFrame) {
+        long start = System.currentTimeMillis();
+        boolean written = false;
+        try {
+            Files.write(Paths.get(outputFileName), frame);
+            written = true;
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            System.out.println("Error in screenshot");
+        } finally {
+            if (recentFrame != null) {
+                if (!written) {
+                    synchronized (recentFrames) {
+                        recentFrames.remove(recentFrame.fileName, recentFrame);
+                    }
+                }
+                recentFrame.written.complete(written);
+            }
+            writeMillis.addAndGet(System.currentTimeMillis() - start);
+            writeTimer.record((System.currentTimeMillis() - start) * 1000000);
+        }
+    }
+
+    // The original was queued first, so it has been written or is being written by now
+    private void writeDuplicate(byte[] frame, String outputFileName, RecentFrame originalFrame, String fileName) {
+        if (!originalFrame.written.join()) {
+            write(frame, outputFileName, null);
+            return;
+        }
+        try {
+            duplicateCount.incrementAndGet();
+            recordDuplicate(outputFileName, originalFrame.fileName, fileName);
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+            System.out.println("Error in screenshot");
+        }
+    }
+
+    // Returns a recent near-identical frame, if any
+    private RecentFrame findDuplicate(long frameHash) {
+        for (RecentFrame recentFrame: recentFrames.values()) {
+            if (Long.bitCount(recentFrame.hash ^ frameHash) <= dedupThreshold) {
+                recentFrames.get(recentFrame.fileName);
+                return recentFrame;
+            }
+        }
+        return null;
+    }
+
+    private RecentFrame remember(String outputFileName, long frameHash) {
+        RecentFrame recentFrame = new RecentFrame(outputFileName, frameHash);
+        recentFrames.put(outputFileName, recentFrame);
+        if (recentFrames.size() > RECENT_FRAME_LIMIT) {
+            Iterator<String> leastRecentlyUsed = recentFrames.keySet().iterator();
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+        }
+        return recentFrame;
+    }
+
+    // 64-bit difference hash of a 9x8 grayscale thumbnail, null when the format cannot be decoded (e.g. WebP)
+    private Long differenceHash(byte[] frame) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(frame));
+        } catch (IOException ex) {
+            return null;
+        }
+        if (image == null) {
+            return null;
+        }
+        BufferedImage thumbnail = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = thumbnail.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, 9, 8, null);
+        graphics.dispose();
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = thumbnail.getRaster().getSample(x, y, 0);
+                int right = thumbnail.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private synchronized void recordDuplicate(String outputFileName, String originalFileName, String fileName) throws IOException {
+        if (duplicatesWriter == null) {
+            duplicatesFileName = Paths.get(fileName).resolveSibling("duplicates").toString();
+            duplicatesWriter = new FileWriter(duplicatesFileName, true);
+        }
+        duplicatesWriter.write(Paths.get(outputFileName).getFileName() + " " + Paths.get(originalFileName).getFileName() + "\n");
+    }
+
+    public void close() {
+        writeExecutor.shutdown();
+        try {
+            writeExecutor.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (duplicatesWriter != null) {
+                try {
+                    duplicatesWriter.close();
+                } catch (IOException ignored) { }
+            }
+        }
+        int captured = capturedCount.get();
+        if (captured > 0) {
+            System.out.println("Screenshots: " + captured + " captured, " + duplicateCount.get() + " duplicates skipped, "
+                    + (captureMillis.get() / captured) + "ms capture and " + (writeMillis.get() / captured) + "ms background write on average");
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.cache.ResponseCache;
+import com.tkupoluyi.browser_interaction_bot.exceptions.DeadlineExceededException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+
+// A fixed number of Chrome sessions, launched together up front and handed out to executions in turn. A returned
+// session is reset to a blank page without cookies, storage or extra tabs before it is handed out again, and a session
+// that no longer responds is quit and replaced with a fresh one, so a crashed browser only costs one relaunch.
+// With a shared browser, one Chrome is launched and every session is an isolated browser context inside it, with its
+// own cookies, storage and tab, driven by a ChromeDriver attached to that tab.
+public class SessionPool {
+    private static final Map<ChromeDriver, String> contextTargets = new ConcurrentHashMap<>();
+    private static final int TARGET_ATTEMPTS = 20;
+    private static final long TARGET_RETRY_MILLIS = 100;
+
+    private ChromeOptions chromeOptions;
+    private LinkedBlockingQueue<ChromeDriver> idleDrivers;
+    private Set<ChromeDriver> drivers;
+    private ResponseCache responseCache;
+    private int launchedCount;
+    private int replacedCount;
+    private boolean sharedBrowser;
+    private ChromeDriver hostDriver;
+    private BrowserConnection browserConnection;
+    private ChromeOptions attachOptions;
+    private Map<ChromeDriver, String> browserContexts;
+
+    public SessionPool(ChromeOptions chromeOptions, int size) {
+        this(chromeOptions, size, false);
+    }
+
+    public SessionPool(ChromeOptions chromeOptions, int size, boolean sharedBrowser) {
+        this.chromeOptions = chromeOptions;
+        this.idleDrivers = new LinkedBlockingQueue<>();
+        this.drivers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        this.sharedBrowser = sharedBrowser;
+        this.browserContexts = new ConcurrentHashMap<>();
+        if (sharedBrowser) {
+            this.hostDriver = new ChromeDriver(ChromeDriverService.createDefaultService(), chromeOptions);
+            this.browserConnection = new BrowserConnection(hostDriver);
+            this.attachOptions = new ChromeOptions();
+            attachOptions.setExperimentalOption("debuggerAddress", BrowserConnection.getDebuggerAddress(hostDriver));
+        }
+        ExecutorService launchExecutor = Executors.newFixedThreadPool(Math.max(1, size));
+        try {
+            List<Future<ChromeDriver>> launches = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                launches.add(launchExecutor.submit(this::launch));
+            }
+            for (Future<ChromeDriver> launch: launches) {
+                idleDrivers.add(launch.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new WebDriverException("Interrupted while starting browser sessions");
+        } catch (ExecutionException ex) {
+            close();
+            throw new WebDriverException("Could not start browser sessions", ex.getCause());
+        } finally {
+            launchExecutor.shutdown();
+        }
+    }
+
+    // The tab a pooled driver drives inside its own browser context, null for a driver with a browser of its own
+    public static String getContextTarget(ChromeDriver driver) {
+        return contextTargets.get(driver);
+    }
+
+    // Attaches the cache to every session, including the ones launched later as replacements
+    public synchronized void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        for (ChromeDriver driver: drivers) {
+            responseCache.attach(driver);
+        }
+    }
+
+    // Blocks until a session is idle
+    public ChromeDriver borrow() {
+        try {
+            return checkOut(idleDrivers.take());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting for a browser session");
+        }
+    }
+
+    // Returns null instead of waiting when every session is in use
+    public ChromeDriver tryBorrow() {
+        ChromeDriver driver = idleDrivers.poll();
+        return driver == null ? null : checkOut(driver);
+    }
+
+    public void release(ChromeDriver driver) {
+        if (!drivers.contains(driver) || idleDrivers.contains(driver)) {
+            return;
+        }
+        idleDrivers.add(reset(driver) ? driver : replace(driver));
+    }
+
+    // Replaces a session whose browser hung while it was borrowed, the replacement stays borrowed
+    public ChromeDriver relaunch(ChromeDriver driver) {
+        return replace(driver);
+    }
+
+    public void close() {
+        for (ChromeDriver driver: drivers) {
+            quit(driver);
+        }
+        drivers.clear();
+        idleDrivers.clear();
+        if (hostDriver != null) {
+            browserConnection.close();
+            quit(hostDriver);
+            hostDriver = null;
+        }
+        if (replacedCount > 0) {
+            System.out.println("Session pool: " + launchedCount + " sessions launched, " + replacedCount + " replaced after failing");
+        }
+    }
+
+    private ChromeDriver checkOut(ChromeDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return driver;
+        } catch (WebDriverException ex) {
+            return replace(driver);
+        }
+    }
+
+    private ChromeDriver launch() {
+        ChromeDriver driver = sharedBrowser ? launchContext() : new ChromeDriver(ChromeDriverService.createDefaultService(), chromeOptions);
+        synchronized (this) {
+            launchedCount++;
+            if (responseCache != null) {
+                responseCache.attach(driver);
+            }
+        }
+        drivers.add(driver);
+        return driver;
+    }
+
+    // Creates a browser context with one blank tab, then attaches a driver to the running browser and points it at the
+    // tab. A driver left on any other tab would crawl outside the context, so the session fails to launch instead.
+    private ChromeDriver launchContext() {
+        String browserContextId = (String) browserConnection.send("Target.createBrowserContext", new HashMap<>()).get("browserContextId");
+        Map<String, Object> targetQuery = new HashMap<>();
+        targetQuery.put("url", "about:blank");
+        targetQuery.put("browserContextId", browserContextId);
+        String targetId = (String) browserConnection.send("Target.createTarget", targetQuery).get("targetId");
+        ChromeDriver driver = new ChromeDriver(ChromeDriverService.createDefaultService(), attachOptions);
+        browserContexts.put(driver, browserContextId);
+        if (!switchToTarget(driver, targetId)) {
+            quit(driver);
+            throw new WebDriverException("Could not attach to the tab of browser context " + browserContextId);
+        }
+        contextTargets.put(driver, targetId);
+        return driver;
+    }
+
+    // The new tab can take a moment to show up among the driver's window handles
+    private boolean switchToTarget(ChromeDriver driver, String targetId) {
+        for (int attempt = 0; attempt < TARGET_ATTEMPTS; attempt++) {
+            for (String handle: driver.getWindowHandles()) {
+                if (handle.endsWith(targetId)) {
+                    driver.switchTo().window(handle);
+                    return driver.getWindowHandle().endsWith(targetId);
+                }
+            }
+            try {
+                Thread.sleep(TARGET_RETRY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private ChromeDriver replace(ChromeDriver driver) {
+        System.out.println("Replacing unresponsive browser session");
+        drivers.remove(driver);
+        quit(driver);
+        synchronized (this) {
+            replacedCount++;
+        }
+        return launch();
+    }
+
+    // Closes every tab but one, clears cookies and the storage of the last visited origin, and leaves a blank page
+    private boolean reset(ChromeDriver driver) {
+        try {
+            if (sharedBrowser) {
+                BrowserInteractions.closeExtraneousTabs(driver, 1);
+            } else {
+                Iterator<String> handles = driver.getWindowHandles().iterator();
+                String keptHandle = handles.next();
+                while (handles.hasNext()) {
+                    driver.switchTo().window(handles.next());
+                    driver.close();
+                }
+                driver.switchTo().window(keptHandle);
+            }
+
+            String origin = originOf(driver.getCurrentUrl());
+            if (origin != null) {
+                Map<String, Object> storageQuery = new HashMap<>();
+                storageQuery.put("origin", origin);
+                storageQuery.put("storageTypes", "all");
+                BrowserInteractions.executeCdpCommand(driver, "Storage.clearDataForOrigin", storageQuery);
+            }
+            BrowserInteractions.executeCdpCommand(driver, "Network.clearBrowserCookies", new HashMap<>());
+            driver.get("about:blank");
+            return true;
+        } catch (WebDriverException ex) {
+            return false;
+        }
+    }
+
+    private String originOf(String url) {
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() != null && uri.getScheme().startsWith("http")) {
+                return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+            }
+        } catch (Exception ignored) { }
+        return null;
+    }
+
+    // A driver attached to a shared browser only detaches on quit, so its browser context is disposed separately,
+    // which closes the context's tabs along with it
+    private void quit(ChromeDriver driver) {
+        try {
+            DeadlineExecutor.call("quit", () -> {
+                driver.quit();
+                return null;
+            });
+        } catch (WebDriverException | DeadlineExceededException ignored) { }
+        contextTargets.remove(driver);
+        String browserContextId = browserContexts.remove(driver);
+        if (browserContextId != null) {
+            try {
+                Map<String, Object> contextQuery = new HashMap<>();
+                contextQuery.put("browserContextId", browserContextId);
+                browserConnection.send("Target.disposeBrowserContext", contextQuery);
+            } catch (WebDriverException ignored) { }
+        }
+    }
+}
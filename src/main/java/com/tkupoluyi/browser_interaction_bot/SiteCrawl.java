@@ -0,0 +1,81 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.net.URI;
+
+// One entry of a batch site list, with the outcome of its crawl once it has run
+public class SiteCrawl {
+    private String url;
+    private int priority;
+    private long timeBudgetMillis;
+    private int order;
+    private String origin;
+    private String outputFileDirectory;
+    private String status;
+    private int eventCount;
+    private long elapsedMillis;
+
+    SiteCrawl(String url, int priority, long timeBudgetMillis, int order) {
+        this.url = url;
+        this.priority = priority;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.order = order;
+        this.origin = originOf(url);
+        this.status = "pending";
+    }
+
+    private static String originOf(String url) {
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() != null) {
+                return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+            }
+        } catch (Exception ignored) { }
+        return url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getOutputFileDirectory() {
+        return outputFileDirectory;
+    }
+
+    public void setOutputFileDirectory(String outputFileDirectory) {
+        this.outputFileDirectory = outputFileDirectory;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void complete(String status, int eventCount, long elapsedMillis) {
+        this.status = status;
+        this.eventCount = eventCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+}
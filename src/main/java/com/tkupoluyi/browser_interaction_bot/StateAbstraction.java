@@ -0,0 +1,122 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Abstracts the page after a trigger into a hash of its visible structure and normalized visible text, so events that
+// lead to a state already visited can share that state's node instead of growing their own subtree. The hash of
+// every element is cached in the page and a MutationObserver drops the cached hashes of mutated elements and their
+// ancestors, so after the first hash only the changed parts of the DOM are walked again. An attribute change can show
+// or hide siblings and their descendants through CSS selectors, so it rehashes the whole subtree of the element's
+// parent, and a stylesheet change rehashes the whole body. A cached hash is also dropped when its element's own
+// visibility no longer matches it.
+public class StateAbstraction {
+    public static final String DEFAULT_IGNORE_SELECTOR = "iframe, ins.adsbygoogle, [id^='google_ads'], [data-ad-slot]";
+    public static final String DEFAULT_IGNORE_TEXT = "\\d{1,2}:\\d{2}(:\\d{2})?(\\s?[AaPp][Mm])?|\\d{4}-\\d{2}-\\d{2}";
+
+    // Returns the state hash, the body hash followed by the number of visible elements
+    private static final String HASH_SCRIPT =
+            "var ignoreSelector = arguments[0], ignoreTextSource = arguments[1], hasher = window.__bibStateHasher;" +
+            "function isStylesheet(node) { return node && (node.nodeName === 'STYLE' || node.nodeName === 'LINK'); }" +
+            "function rehashSubtree(node) { hasher.deep.add(!node || node === document || node === document.documentElement ? document.body : node); }" +
+            "function invalidate(records) {" +
+            "  records.forEach(function(record) {" +
+            "    if (isStylesheet(record.target) || isStylesheet(record.target.parentNode)" +
+            "        || Array.prototype.some.call(record.addedNodes, isStylesheet) || Array.prototype.some.call(record.removedNodes, isStylesheet)) {" +
+            "      rehashSubtree(document.body);" +
+            "    } else if (record.type === 'attributes') { rehashSubtree(record.target.parentNode); }" +
+            "    for (var node = record.target; node; node = node.parentNode) { hasher.hashes.delete(node); }" +
+            "  });" +
+            "}" +
+            "if (!hasher || hasher.ignoreSelector !== ignoreSelector || hasher.ignoreTextSource !== ignoreTextSource) {" +
+            "  if (hasher) { hasher.observer.disconnect(); }" +
+            "  hasher = window.__bibStateHasher = {hashes: new WeakMap(), deep: new Set(), ignoreSelector: ignoreSelector," +
+            "    ignoreTextSource: ignoreTextSource, ignoreText: ignoreTextSource ? new RegExp(ignoreTextSource, 'g') : null};" +
+            "  hasher.observer = new MutationObserver(invalidate);" +
+            "  hasher.observer.observe(document, {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "}" +
+            "invalidate(hasher.observer.takeRecords());" +
+            "function mix(hash, text) {" +
+            "  for (var i = 0; i < text.length; i++) { hash = Math.imul(hash ^ text.charCodeAt(i), 16777619); }" +
+            "  return hash;" +
+            "}" +
+            "function isHidden(element) {" +
+            "  if (element.tagName === 'SCRIPT' || element.tagName === 'STYLE' || element.tagName === 'NOSCRIPT' || element.tagName === 'TEMPLATE') { return true; }" +
+            "  if (hasher.ignoreSelector && element.matches(hasher.ignoreSelector)) { return true; }" +
+            "  return element !== document.body && (element.getClientRects().length === 0 || window.getComputedStyle(element).visibility === 'hidden');" +
+            "}" +
+            "function hashElement(element, force) {" +
+            "  if (hasher.deep.has(element)) { hasher.deep.delete(element); force = true; }" +
+            "  var hidden = isHidden(element);" +
+            "  if (!force && hasher.hashes.has(element)) {" +
+            "    var cachedState = hasher.hashes.get(element);" +
+            "    if ((cachedState.count === 0) === hidden) { return cachedState; }" +
+            "    force = true;" +
+            "  }" +
+            "  var state = {hash: 0, count: 0};" +
+            "  if (!hidden) {" +
+            "    state.hash = mix(0x811c9dc5, element.tagName);" +
+            "    state.count = 1;" +
+            "    for (var child = element.firstChild; child; child = child.nextSibling) {" +
+            "      if (child.nodeType === 1) {" +
+            "        var childState = hashElement(child, force);" +
+            "        if (childState.count > 0) { state.hash = Math.imul(state.hash ^ childState.hash, 16777619); state.count += childState.count; }" +
+            "      } else if (child.nodeType === 3) {" +
+            "        var text = child.data.replace(/\\s+/g, ' ').trim();" +
+            "        if (hasher.ignoreText) { text = text.replace(hasher.ignoreText, ''); }" +
+            "        if (text) { state.hash = mix(state.hash ^ 0x2f, text); }" +
+            "      }" +
+            "    }" +
+            "  }" +
+            "  hasher.hashes.set(element, state);" +
+            "  return state;" +
+            "}" +
+            "var bodyState = hashElement(document.body, false);" +
+            "return (bodyState.hash >>> 0).toString(16) + '-' + bodyState.count;";
+
+    private String ignoreSelector;
+    private String ignoreText;
+    private Map<String, Event> stateEvents;
+    private int prunedCount;
+
+    public StateAbstraction(String ignoreSelector, String ignoreText) {
+        this.ignoreSelector = ignoreSelector;
+        this.ignoreText = ignoreText;
+        this.stateEvents = new HashMap<>();
+        this.prunedCount = 0;
+    }
+
+    // Returns the hash of the current page state, or null when it could not be computed
+    public String hashState(ChromeDriver driver) {
+        try {
+            return (String) driver.executeScript(HASH_SCRIPT, ignoreSelector, ignoreText);
+        } catch (WebDriverException ex) {
+            System.out.println("Could not hash page state, " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // Records that event leads to stateHash. Returns the event that first reached the same state, or null when the
+    // state is new and event becomes its node.
+    public synchronized Event visit(String stateHash, Event event) {
+        Event stateEvent = stateEvents.get(stateHash);
+        if (stateEvent != null) {
+            prunedCount++;
+            return stateEvent;
+        }
+        event.setStateHash(stateHash);
+        stateEvents.put(stateHash, event);
+        return null;
+    }
+
+    public synchronized int getStateCount() {
+        return stateEvents.size();
+    }
+
+    public synchronized void printReport() {
+        System.out.println("State abstraction: " + stateEvents.size() + " distinct states, " + prunedCount + " events pruned as revisits");
+    }
+}
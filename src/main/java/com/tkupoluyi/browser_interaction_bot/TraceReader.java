@@ -0,0 +1,353 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Streams event chains out of a trace, one chain per processed event, in the order they were written. Reads both the
+// indexed binary format of TraceWriter and the older JSON lines format. Binary traces are read record by record,
+// keeping only the string table and four ints per record to rebuild chains, and with their index they can seek
+// straight to any record for partial replay; without it, seeking reads through the records before. A record torn by
+// a crash ends the trace.
+public class TraceReader implements Closeable {
+    private static final int WINDOW_SIZE = 8 * 1024;
+
+    private interface ByteSource {
+        byte readByte() throws IOException;
+    }
+
+    // Reads the trace file through a window of WINDOW_SIZE bytes, so records and strings that sit close together cost
+    // one read instead of one per byte
+    private static class FileWindow {
+        private RandomAccessFile file;
+        private byte[] window = new byte[WINDOW_SIZE];
+        private long windowStart;
+        private int windowLength;
+        private int position;
+
+        FileWindow(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        void seek(long offset) throws IOException {
+            if (offset >= windowStart && offset < windowStart + windowLength) {
+                position = (int) (offset - windowStart);
+            } else {
+                fill(offset);
+            }
+        }
+
+        private void fill(long offset) throws IOException {
+            file.seek(offset);
+            windowStart = offset;
+            windowLength = Math.max(0, file.read(window));
+            position = 0;
+        }
+
+        byte readByte() throws IOException {
+            if (position == windowLength) {
+                fill(windowStart + windowLength);
+                if (windowLength == 0) {
+                    throw new EOFException();
+                }
+            }
+            return window[position++];
+        }
+
+        void readFully(byte[] bytes) throws IOException {
+            int copied = 0;
+            while (copied < bytes.length) {
+                if (position == windowLength) {
+                    fill(windowStart + windowLength);
+                    if (windowLength == 0) {
+                        throw new EOFException();
+                    }
+                }
+                int length = Math.min(bytes.length - copied, windowLength - position);
+                System.arraycopy(window, position, bytes, copied, length);
+                position += length;
+                copied += length;
+            }
+        }
+    }
+
+    private String fileName;
+    private boolean binary;
+    private DataInputStream input;
+    private BufferedReader lineReader;
+    private JSONParser parser;
+
+    private List<String> strings;
+    private int[] parentIds;
+    private int[] eventTypeIds;
+    private int[] xpathIds;
+    private int[] stateIds;
+    private int recordCount;
+
+    // Random access state, loaded from the index by seek
+    private RandomAccessFile file;
+    private FileWindow fileWindow;
+    private long[] recordOffsets;
+    private long[] stringOffsets;
+    private Map<Integer, String> stringCache;
+    private int nextRecordId;
+    private boolean seeking;
+
+    public TraceReader(String fileName) throws IOException {
+        this.fileName = fileName;
+        this.binary = isIndexedTrace(fileName);
+        if (binary) {
+            openStream();
+        } else {
+            this.lineReader = new BufferedReader(new FileReader(fileName));
+            this.parser = new JSONParser();
+            this.nextRecordId = 0;
+        }
+        this.seeking = false;
+    }
+
+    private void openStream() throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 64 * 1024));
+        input.readInt();
+        this.strings = new ArrayList<>();
+        this.parentIds = new int[256];
+        this.eventTypeIds = new int[256];
+        this.xpathIds = new int[256];
+        this.stateIds = new int[256];
+        this.recordCount = 0;
+        this.nextRecordId = 0;
+    }
+
+    public static boolean isIndexedTrace(String fileName) throws IOException {
+        try (DataInputStream header = new DataInputStream(new FileInputStream(fileName))) {
+            return header.readInt() == TraceWriter.MAGIC;
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    // Positions the reader so the next chain is the one of recordId, counting from 0. Binary traces jump there through
+    // the index, or read through the records before it when the index is missing. JSON lines traces skip the lines
+    // before it.
+    public void seek(int recordId) throws IOException {
+        if (!binary) {
+            while (nextRecordId < recordId && lineReader.readLine() != null) {
+                nextRecordId++;
+            }
+            return;
+        }
+        if (recordOffsets == null && Files.exists(Paths.get(fileName + ".idx"))) {
+            loadIndex();
+        }
+        if (recordOffsets != null) {
+            nextRecordId = recordId;
+            seeking = true;
+            return;
+        }
+        if (recordId < nextRecordId) {
+            input.close();
+            openStream();
+        }
+        while (nextRecordId < recordId && readRecord()) {
+            nextRecordId++;
+        }
+    }
+
+    // Returns the next chain, root event first, or null at the end of the trace
+    public List<Event> nextChain() throws IOException {
+        if (!binary) {
+            return nextJsonChain();
+        }
+        if (seeking) {
+            try {
+                return nextRecordId < recordOffsets.length ? readChain(nextRecordId++) : null;
+            } catch (EOFException ex) {
+                return null;
+            }
+        }
+        if (!readRecord()) {
+            return null;
+        }
+        nextRecordId++;
+        return buildChain(recordCount - 1);
+    }
+
+    // Reads up to and including the next record, along with the strings written before it. Returns false at the end
+    // of the trace or at a torn entry.
+    private boolean readRecord() throws IOException {
+        try {
+            while (true) {
+                byte entryType = input.readByte();
+                if (entryType == TraceWriter.STRING) {
+                    byte[] bytes = new byte[readVarInt(input::readByte)];
+                    input.readFully(bytes);
+                    strings.add(new String(bytes, StandardCharsets.UTF_8));
+                } else if (entryType == TraceWriter.RECORD) {
+                    if (recordCount == parentIds.length) {
+                        int capacity = recordCount * 2;
+                        parentIds = Arrays.copyOf(parentIds, capacity);
+                        eventTypeIds = Arrays.copyOf(eventTypeIds, capacity);
+                        xpathIds = Arrays.copyOf(xpathIds, capacity);
+                        stateIds = Arrays.copyOf(stateIds, capacity);
+                    }
+                    parentIds[recordCount] = readVarInt(input::readByte) - 1;
+                    eventTypeIds[recordCount] = readVarInt(input::readByte);
+                    xpathIds[recordCount] = readVarInt(input::readByte);
+                    stateIds[recordCount] = readVarInt(input::readByte) - 1;
+                    recordCount++;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        } catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    private List<Event> buildChain(int recordId) {
+        LinkedList<Event> chain = new LinkedList<>();
+        for (int id = recordId; id >= 0; id = parentIds[id]) {
+            Event event = new Event(strings.get(eventTypeIds[id]), strings.get(xpathIds[id]));
+            if (stateIds[id] >= 0) {
+                event.setStateHash(strings.get(stateIds[id]));
+            }
+            chain.addFirst(event);
+        }
+        return linkChain(chain);
+    }
+
+    // Reads the record and its ancestors through the index, resolving only the strings they use
+    private List<Event> readChain(int recordId) throws IOException {
+        LinkedList<Event> chain = new LinkedList<>();
+        for (int id = recordId; id >= 0; ) {
+            fileWindow.seek(recordOffsets[id] + 1);
+            int parentId = readVarInt(fileWindow::readByte) - 1;
+            int eventTypeId = readVarInt(fileWindow::readByte);
+            int xpathId = readVarInt(fileWindow::readByte);
+            int stateId = readVarInt(fileWindow::readByte) - 1;
+            Event event = new Event(readString(eventTypeId), readString(xpathId));
+            if (stateId >= 0) {
+                event.setStateHash(readString(stateId));
+            }
+            chain.addFirst(event);
+            id = parentId;
+        }
+        return linkChain(chain);
+    }
+
+    private String readString(int stringId) throws IOException {
+        String value = stringCache.get(stringId);
+        if (value == null) {
+            fileWindow.seek(stringOffsets[stringId] + 1);
+            byte[] bytes = new byte[readVarInt(fileWindow::readByte)];
+            fileWindow.readFully(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            stringCache.put(stringId, value);
+        }
+        return value;
+    }
+
+    private List<Event> linkChain(List<Event> chain) {
+        Event parent = null;
+        for (Event event: chain) {
+            if (parent != null) {
+                parent.addChild(event);
+            }
+            parent = event;
+        }
+        return chain;
+    }
+
+    // Entries whose offset lies past the end of the trace were indexed but never committed, and are dropped
+    private void loadIndex() throws IOException {
+        file = new RandomAccessFile(fileName, "r");
+        fileWindow = new FileWindow(file);
+        long traceLength = file.length();
+        byte[] index = Files.readAllBytes(Paths.get(fileName + ".idx"));
+        DataInputStream indexInput = new DataInputStream(new ByteArrayInputStream(index));
+        long[] recordEntries = new long[index.length / 8];
+        long[] stringEntries = new long[index.length / 8];
+        int recordEntryCount = 0;
+        int stringEntryCount = 0;
+        for (int i = 0; i < index.length / 8; i++) {
+            long entry = indexInput.readLong();
+            if ((entry >>> 1) >= traceLength) {
+                break;
+            }
+            if ((entry & 1) == 1) {
+                stringEntries[stringEntryCount++] = entry >>> 1;
+            } else {
+                recordEntries[recordEntryCount++] = entry >>> 1;
+            }
+        }
+        recordOffsets = Arrays.copyOf(recordEntries, recordEntryCount);
+        stringOffsets = Arrays.copyOf(stringEntries, stringEntryCount);
+        stringCache = new HashMap<>();
+    }
+
+    private List<Event> nextJsonChain() throws IOException {
+        String line = lineReader.readLine();
+        if (line == null) {
+            return null;
+        }
+        nextRecordId++;
+        List<Event> chain = new ArrayList<>();
+        try {
+            for (Object item: (JSONArray) parser.parse(line)) {
+                JSONObject json = (JSONObject) item;
+                Event event = new Event((String) json.get("event"), (String) json.get("xpath"));
+                if (json.get("state") != null) {
+                    event.setStateHash((String) json.get("state"));
+                }
+                chain.add(event);
+            }
+        } catch (ParseException ex) {
+            throw new IOException("Malformed trace line " + nextRecordId + ", " + fileName);
+        }
+        return linkChain(chain);
+    }
+
+    private static int readVarInt(ByteSource source) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = source.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    // Writes the trace in the JSON lines format, one full chain per line
+    public static void exportJsonLines(String traceFileName, String jsonFileName) throws IOException {
+        try (TraceReader reader = new TraceReader(traceFileName);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(jsonFileName))) {
+            List<Event> chain;
+            while ((chain = reader.nextChain()) != null) {
+                writer.write(chain.get(chain.size() - 1).serializeFullEventTraceString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+        if (lineReader != null) {
+            lineReader.close();
+        }
+        if (file != null) {
+            file.close();
+        }
+    }
+}
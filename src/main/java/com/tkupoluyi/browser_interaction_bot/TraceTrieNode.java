@@ -0,0 +1,60 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.util.*;
+
+// A node of the prefix trie built from trace lines. Lines sharing a predecessor chain share the nodes for it,
+// and each node remembers the screenshot numbers of the lines that end at it.
+public class TraceTrieNode {
+    private Event event;
+    private TraceTrieNode parent;
+    private int depth;
+    private Map<String, TraceTrieNode> children;
+    private List<Integer> screenshotNumbers;
+
+    TraceTrieNode(Event event, TraceTrieNode parent) {
+        this.event = event;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.children = new LinkedHashMap<>();
+        this.screenshotNumbers = new ArrayList<>();
+    }
+
+    public TraceTrieNode getOrAddChild(String eventType, String xpath) {
+        String key = eventType + " " + xpath;
+        TraceTrieNode child = children.get(key);
+        if (child == null) {
+            child = new TraceTrieNode(new Event(eventType, xpath), this);
+            children.put(key, child);
+        }
+        return child;
+    }
+
+    public void addScreenshotNumber(int screenshotNumber) {
+        screenshotNumbers.add(screenshotNumber);
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public Collection<TraceTrieNode> getChildren() {
+        return children.values();
+    }
+
+    public List<Integer> getScreenshotNumbers() {
+        return screenshotNumbers;
+    }
+
+    // The events to trigger from a fresh page load to reach this node, in order
+    public List<Event> getPath() {
+        LinkedList<Event> path = new LinkedList<>();
+        for (TraceTrieNode node = this; node.parent != null; node = node.parent) {
+            path.addFirst(node.event);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,104 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Writes the trace as compact binary records instead of one JSON chain per line. Every processed event is one record
+// holding the id of its parent's record and string table ids for its event type, xpath and state hash, so the
+// trace grows linearly with depth. String table entries are written inline just before their first use. The offset
+// of every entry goes to a side index (<trace>.idx), so readers can seek straight to any record. Writes are
+// buffered and committed in groups of records or at a time interval, whichever comes first.
+public class TraceWriter {
+    static final int MAGIC = 0x42495452;
+    static final byte STRING = 'S';
+    static final byte RECORD = 'R';
+
+    private DataOutputStream output;
+    private DataOutputStream indexOutput;
+    private long position;
+    private Map<String, Integer> stringIds;
+    private Map<Event, Integer> recordIds;
+    private int groupSize;
+    private long groupMillis;
+    private int pendingRecords;
+    private long lastCommitMillis;
+
+    public TraceWriter(String fileName, int groupSize, long groupMillis) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 64 * 1024));
+        this.indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName + ".idx")));
+        this.stringIds = new HashMap<>();
+        this.recordIds = new IdentityHashMap<>();
+        this.groupSize = groupSize;
+        this.groupMillis = groupMillis;
+        this.pendingRecords = 0;
+        this.lastCommitMillis = System.currentTimeMillis();
+        output.writeInt(MAGIC);
+        position = 4;
+    }
+
+    // Appends event as the next record, after its parent when the parent has no record yet
+    public synchronized void append(Event event) throws IOException {
+        Event parent = event.getParent();
+        if (parent != null && !recordIds.containsKey(parent)) {
+            append(parent);
+        }
+        int parentId = parent == null ? -1 : recordIds.get(parent);
+        int eventTypeId = stringId(event.getEventType());
+        int xpathId = stringId(event.getXpath());
+        int stateId = event.getStateHash() == null ? -1 : stringId(event.getStateHash());
+
+        recordIds.put(event, recordIds.size());
+        indexOutput.writeLong(position << 1);
+        output.writeByte(RECORD);
+        position += 1 + writeVarInt(parentId + 1) + writeVarInt(eventTypeId) + writeVarInt(xpathId) + writeVarInt(stateId + 1);
+
+        pendingRecords++;
+        if (pendingRecords >= groupSize || System.currentTimeMillis() - lastCommitMillis >= groupMillis) {
+            commit();
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            commit();
+            output.close();
+            indexOutput.close();
+        } catch (IOException ignored) { }
+    }
+
+    private int stringId(String value) throws IOException {
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        id = stringIds.size();
+        stringIds.put(value, id);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        indexOutput.writeLong((position << 1) | 1);
+        output.writeByte(STRING);
+        position += 1 + writeVarInt(bytes.length) + bytes.length;
+        output.write(bytes);
+        return id;
+    }
+
+    private int writeVarInt(int value) throws IOException {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            length++;
+        }
+        output.writeByte(value);
+        return length;
+    }
+
+    private void commit() throws IOException {
+        output.flush();
+        indexOutput.flush();
+        pendingRecords = 0;
+        lastCommitMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,36 @@
+package com.tkupoluyi.browser_interaction_bot.cache;
+
+import java.util.List;
+import java.util.Map;
+
+public class CachedResponse {
+    private String requestKey;
+    private int status;
+    private List<Map<String, String>> headers;
+    private String bodyHash;
+
+    public CachedResponse() { }
+
+    CachedResponse(String requestKey, int status, List<Map<String, String>> headers, String bodyHash) {
+        this.requestKey = requestKey;
+        this.status = status;
+        this.headers = headers;
+        this.bodyHash = bodyHash;
+    }
+
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public List<Map<String, String>> getHeaders() {
+        return headers;
+    }
+
+    public String getBodyHash() {
+        return bodyHash;
+    }
+}
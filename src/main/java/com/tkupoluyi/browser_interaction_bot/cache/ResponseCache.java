@@ -0,0 +1,276 @@
+package com.tkupoluyi.browser_interaction_bot.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tkupoluyi.browser_interaction_bot.CdpSession;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Record/replay cache for every request a crawled page makes, intercepted through the CDP Fetch domain.
+// Bodies are kept in a content-addressed store under objects/, keyed by their SHA-256, and index.jsonl maps each
+// request to its status, headers and body hash. Recently served bodies are held in an in-memory LRU tier.
+public class ResponseCache {
+    public static final int RECORD = 1;
+    public static final int REPLAY = 2;
+
+    private static final Set<String> DROPPED_HEADERS = new HashSet<>(Arrays.asList("content-encoding", "content-length", "transfer-encoding"));
+
+    private Path cacheDirectory;
+    private int mode;
+    private long memoryLimitBytes;
+    private long memoryBytes;
+    private Map<String, CachedResponse> index;
+    private LinkedHashMap<String, byte[]> memoryTier;
+    private BufferedWriter indexWriter;
+    private ObjectMapper objectMapper;
+    private ExecutorService interceptionExecutor;
+    private List<CdpSession> sessions;
+    private AtomicInteger hitCount;
+    private AtomicInteger missCount;
+    private AtomicInteger storedCount;
+
+    public ResponseCache(String cacheDirectory, int mode, long memoryLimitBytes) throws IOException {
+        this.cacheDirectory = Paths.get(cacheDirectory);
+        this.mode = mode;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.memoryBytes = 0;
+        this.index = new ConcurrentHashMap<>();
+        this.memoryTier = new LinkedHashMap<>(16, 0.75f, true);
+        this.objectMapper = new ObjectMapper();
+        // CDP commands cannot be sent from the thread that delivers CDP events, so interception is handed off
+        this.interceptionExecutor = Executors.newCachedThreadPool();
+        this.sessions = new ArrayList<>();
+        this.hitCount = new AtomicInteger();
+        this.missCount = new AtomicInteger();
+        this.storedCount = new AtomicInteger();
+        Files.createDirectories(this.cacheDirectory.resolve("objects"));
+        loadIndex();
+        this.indexWriter = Files.newBufferedWriter(indexFile(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private Path indexFile() {
+        return cacheDirectory.resolve("index.jsonl");
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexFile())) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    CachedResponse response = objectMapper.readValue(line, CachedResponse.class);
+                    index.put(response.getRequestKey(), response);
+                }
+            }
+        }
+    }
+
+    public void attach(ChromeDriver driver) {
+        CdpSession session = new CdpSession(driver);
+        session.addListener("Fetch.requestPaused", event -> interceptionExecutor.submit(() -> handleRequestPaused(session, event)));
+        List<Map<String, Object>> patterns = new ArrayList<>();
+        patterns.add(requestPattern("Request"));
+        if (mode == RECORD) {
+            patterns.add(requestPattern("Response"));
+        }
+        Map<String, Object> query = new HashMap<>();
+        query.put("patterns", patterns);
+        session.send("Fetch.enable", query);
+        synchronized (sessions) {
+            sessions.add(session);
+        }
+    }
+
+    private Map<String, Object> requestPattern(String requestStage) {
+        Map<String, Object> pattern = new HashMap<>();
+        pattern.put("urlPattern", "*");
+        pattern.put("requestStage", requestStage);
+        return pattern;
+    }
+
+    // Every paused request has to be answered, or the page waits on it forever. Any failure before the cache answered
+    // it, such as a malformed event or body, lets the request go through to the network instead.
+    private void handleRequestPaused(CdpSession session, Map<String, Object> event) {
+        Object requestId = event.get("requestId");
+        if (!(requestId instanceof String)) {
+            System.out.println("Response cache got a paused request without an id");
+            return;
+        }
+        try {
+            if (event.get("responseStatusCode") == null && event.get("responseErrorReason") == null) {
+                handleRequestStage(session, (String) requestId, (Map) event.get("request"));
+            } else {
+                handleResponseStage(session, (String) requestId, event);
+            }
+        } catch (RuntimeException | IOException ex) {
+            System.out.println("Response cache could not handle request, " + ex);
+            continueRequest(session, (String) requestId);
+        }
+    }
+
+    private void handleRequestStage(CdpSession session, String requestId, Map request) throws IOException {
+        CachedResponse cached = index.get(requestKey(request));
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            Map<String, Object> query = new HashMap<>();
+            query.put("requestId", requestId);
+            query.put("responseCode", cached.getStatus());
+            query.put("responseHeaders", cached.getHeaders());
+            query.put("body", Base64.getEncoder().encodeToString(readBody(cached.getBodyHash())));
+            session.send("Fetch.fulfillRequest", query);
+        } else if (mode == REPLAY) {
+            missCount.incrementAndGet();
+            Map<String, Object> query = new HashMap<>();
+            query.put("requestId", requestId);
+            query.put("errorReason", "InternetDisconnected");
+            session.send("Fetch.failRequest", query);
+        } else {
+            missCount.incrementAndGet();
+            continueRequest(session, requestId);
+        }
+    }
+
+    private void handleResponseStage(CdpSession session, String requestId, Map<String, Object> event) throws IOException {
+        if (event.get("responseErrorReason") != null) {
+            continueRequest(session, requestId);
+            return;
+        }
+        byte[] body = new byte[0];
+        try {
+            Map<String, Object> query = new HashMap<>();
+            query.put("requestId", requestId);
+            Map<String, Object> result = session.send("Fetch.getResponseBody", query);
+            String encodedBody = (String) result.get("body");
+            body = Boolean.TRUE.equals(result.get("base64Encoded")) ? Base64.getDecoder().decode(encodedBody) : encodedBody.getBytes(StandardCharsets.UTF_8);
+        } catch (WebDriverException ignored) {
+            // Redirects and empty responses have no body
+        }
+
+        List<Map<String, String>> headers = new ArrayList<>();
+        List<Map> responseHeaders = (List<Map>) event.get("responseHeaders");
+        if (responseHeaders != null) {
+            for (Map header: responseHeaders) {
+                String name = (String) header.get("name");
+                if (!DROPPED_HEADERS.contains(name.toLowerCase())) {
+                    Map<String, String> entry = new HashMap<>();
+                    entry.put("name", name);
+                    entry.put("value", (String) header.get("value"));
+                    headers.add(entry);
+                }
+            }
+        }
+        int status = ((Number) event.get("responseStatusCode")).intValue();
+        store(requestKey((Map) event.get("request")), status, headers, body);
+        continueRequest(session, requestId);
+    }
+
+    private void continueRequest(CdpSession session, String requestId) {
+        try {
+            Map<String, Object> query = new HashMap<>();
+            query.put("requestId", requestId);
+            session.send("Fetch.continueRequest", query);
+        } catch (RuntimeException ex) {
+            System.out.println("Response cache could not continue request, " + ex.getMessage());
+        }
+    }
+
+    private void store(String requestKey, int status, List<Map<String, String>> headers, byte[] body) throws IOException {
+        String bodyHash = sha256Hex(body);
+        Path objectFile = objectFile(bodyHash);
+        if (!Files.exists(objectFile)) {
+            Files.createDirectories(objectFile.getParent());
+            Path temporaryFile = Files.createTempFile(objectFile.getParent(), bodyHash, ".tmp");
+            Files.write(temporaryFile, body);
+            Files.move(temporaryFile, objectFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        CachedResponse response = new CachedResponse(requestKey, status, headers, bodyHash);
+        if (index.putIfAbsent(requestKey, response) == null) {
+            storedCount.incrementAndGet();
+            synchronized (this) {
+                indexWriter.write(objectMapper.writeValueAsString(response));
+                indexWriter.newLine();
+                indexWriter.flush();
+            }
+        }
+    }
+
+    private byte[] readBody(String bodyHash) throws IOException {
+        synchronized (memoryTier) {
+            byte[] body = memoryTier.get(bodyHash);
+            if (body != null) {
+                return body;
+            }
+        }
+        byte[] body = Files.readAllBytes(objectFile(bodyHash));
+        synchronized (memoryTier) {
+            if (body.length <= memoryLimitBytes && memoryTier.put(bodyHash, body) == null) {
+                memoryBytes += body.length;
+                Iterator<byte[]> leastRecentlyUsed = memoryTier.values().iterator();
+                while (memoryBytes > memoryLimitBytes && leastRecentlyUsed.hasNext()) {
+                    memoryBytes -= leastRecentlyUsed.next().length;
+                    leastRecentlyUsed.remove();
+                }
+            }
+        }
+        return body;
+    }
+
+    private Path objectFile(String bodyHash) {
+        return cacheDirectory.resolve("objects").resolve(bodyHash.substring(0, 2)).resolve(bodyHash);
+    }
+
+    private String requestKey(Map request) {
+        String postData = request.get("postData") == null ? "" : sha256Hex(((String) request.get("postData")).getBytes(StandardCharsets.UTF_8));
+        return sha256Hex((request.get("method") + " " + request.get("url") + " " + postData).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder();
+            for (byte b: digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public void printReport() {
+        System.out.println("Response cache: " + hitCount.get() + " hits, " + missCount.get() + " misses, " + storedCount.get() + " responses recorded");
+    }
+
+    public void close() {
+        synchronized (sessions) {
+            for (CdpSession session: sessions) {
+                try {
+                    // Pooled browsers outlive the cache, and would otherwise keep pausing every request
+                    session.send("Fetch.disable", new HashMap<>());
+                    session.close();
+                } catch (WebDriverException ignored) { }
+            }
+            sessions.clear();
+        }
+        interceptionExecutor.shutdown();
+        try {
+            synchronized (this) {
+                indexWriter.close();
+            }
+        } catch (IOException ignored) { }
+    }
+}
@@ -1,29 +1,59 @@
 package com.tkupoluyi.browser_interaction_bot.event_handling;
 
 import com.tkupoluyi.browser_interaction_bot.BrowserInteractions;
+import com.tkupoluyi.browser_interaction_bot.DeadlineExecutor;
 import com.tkupoluyi.browser_interaction_bot.Event;
 import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.DeadlineExceededException;
 import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
 import org.openqa.selenium.*;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.interactions.MoveTargetOutOfBoundsException;
 import org.openqa.selenium.remote.UnreachableBrowserException;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class DefaultEventHandler implements EventHandler {
+    private static final Timer findElementTimer = Metrics.timer("find_element");
+
     int unreachableCnt;
     ChromeDriver driver;
+    // A handler is only used from one thread, so its per-type timers need no synchronization
+    Map<String, Timer> triggerTimers;
+    boolean cacheElements;
 
     public DefaultEventHandler() {
+        this(false);
+    }
+
+    // With cacheElements, xpaths are resolved through the page-side ElementCache instead of driver.findElement
+    public DefaultEventHandler(boolean cacheElements) {
         unreachableCnt = 0;
+        triggerTimers = new HashMap<>();
+        this.cacheElements = cacheElements;
     }
 
     public void setDriver(ChromeDriver driver) {
         this.driver = driver;
     }
 
+    // The trigger runs under the operation deadline, so an element lookup or action on a hung page cannot block forever
     @Override
     public void triggerEvent(Event event) throws InteractionBotException {
+        Timer triggerTimer = triggerTimers.computeIfAbsent(event.getEventType(), type -> Metrics.timer("trigger_event", "type", type));
+        long start = triggerTimer.start();
+        try {
+            DeadlineExecutor.callInteraction("trigger_event", () -> triggerEventUntimed(event));
+        } finally {
+            triggerTimer.stop(start);
+        }
+    }
+
+    private void triggerEventUntimed(Event event) throws InteractionBotException {
         String xpath = event.getXpath();
         String eventType = event.getEventType();
         WebElement element = findElementByXpath(xpath);
@@ -53,38 +83,45 @@ public class DefaultEventHandler implements EventHandler {
             // ignored
         } catch (UnreachableBrowserException ex) {
             handleUnreachableBrowserException();
+        } catch (DeadlineExceededException ex) {
+            // Reported as DEADLINE_EXCEEDED by callInteraction, so the caller relaunches the hung browser
+            throw ex;
         } catch (Exception ex) {
             throw new InteractionBotException(InteractionBotException.INTERACTION_EXCEPTION, ex.getMessage());
         }
         BrowserInteractions.closeExtraneousTabs(driver, 1);
     }
 
+    // Every path either finds the element or throws, so the lookup is a single attempt
     private WebElement findElementByXpath(String xpath) throws InteractionBotException {
-        boolean webElementFound = false;
-        WebElement element = null;
-
-        while (!webElementFound) {
-            try {
-                element = driver.findElement(By.xpath(xpath)); // It is at this point that a NoSuchElementException is triggered
-                webElementFound = true;
-            } catch (NotFoundException ex) {
-                throw new InteractionBotException(InteractionBotException.ELEMENT_NOT_FOUND);
-            } catch (UnreachableBrowserException ex) {
-                handleUnreachableBrowserException();
-            } catch (Exception ex) {
-                throw new InteractionBotException(InteractionBotException.UNSPECIFIED_EXCEPTION, ex.getMessage());
+        long start = findElementTimer.start();
+        try {
+            if (cacheElements) {
+                WebElement element = ElementCache.find(driver, xpath);
+                if (element == null) {
+                    throw new NoSuchElementException(xpath);
+                }
+                return element;
             }
+            return driver.findElement(By.xpath(xpath)); // It is at this point that a NoSuchElementException is triggered
+        } catch (NotFoundException ex) {
+            throw new InteractionBotException(InteractionBotException.ELEMENT_NOT_FOUND);
+        } catch (UnreachableBrowserException ex) {
+            handleUnreachableBrowserException();
+            return null;
+        } catch (DeadlineExceededException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new InteractionBotException(InteractionBotException.UNSPECIFIED_EXCEPTION, ex.getMessage());
+        } finally {
+            findElementTimer.stop(start);
         }
-
-        return element;
     }
 
+    // The caller relaunches an unreachable browser, so there is nothing to wait for here
     private void handleUnreachableBrowserException() throws InteractionBotException {
         unreachableCnt += 1;
-        if (unreachableCnt < 30) {
-            System.out.println("Browser Unreachable. Retrying in 1 second, "+(unreachableCnt)+"/30");
-            try { Thread.sleep(1000); } catch (InterruptedException ignore) { }
-        }
+        System.out.println("Browser Unreachable, "+unreachableCnt+" times so far");
         throw new InteractionBotException(InteractionBotException.UNREACHEABLE_BROWSER);
     }
 }
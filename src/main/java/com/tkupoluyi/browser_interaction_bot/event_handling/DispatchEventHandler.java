@@ -0,0 +1,176 @@
+package com.tkupoluyi.browser_interaction_bot.event_handling;
+
+import com.tkupoluyi.browser_interaction_bot.BrowserInteractions;
+import com.tkupoluyi.browser_interaction_bot.DeadlineExecutor;
+import com.tkupoluyi.browser_interaction_bot.Event;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import com.tkupoluyi.browser_interaction_bot.metrics.Timer;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Triggers events without Selenium Actions. With SYNTHETIC fidelity a single script resolves the xpath, scrolls the
+// element into view and dispatches the same event sequence a user would cause, so each trigger is one round-trip and
+// off-screen elements still receive their events. With INPUT fidelity the script only resolves and scrolls, and the
+// events are sent as trusted input through Input.dispatchMouseEvent and Input.dispatchKeyEvent at the element's centre.
+public class DispatchEventHandler implements EventHandler {
+    public static final int SYNTHETIC = 1;
+    public static final int INPUT = 2;
+
+    private static final String TYPED_TEXT = "ABCD";
+
+    // Returns "missing", "unsupported", or the element's centre in viewport coordinates as [x, y, lookup source]
+    private static final String DISPATCH_SCRIPT =
+            ElementCache.RESOLVER_SCRIPT +
+            "var resolved = arguments[4] ? resolve(arguments[0]) : [null, 2], element = resolved[0];" +
+            "if (!arguments[4]) {" +
+            "  try { element = document.evaluate(arguments[0], document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; } catch (e) { }" +
+            "}" +
+            "if (!element) { return 'missing'; }" +
+            "element.scrollIntoView({block: 'center', inline: 'center'});" +
+            "var rect = element.getBoundingClientRect(), x = rect.left + rect.width / 2, y = rect.top + rect.height / 2;" +
+            "var type = arguments[1], text = arguments[2];" +
+            "if (!arguments[3]) { return [x, y, resolved[1]]; }" +
+            "function mouse(name, detail) { element.dispatchEvent(new MouseEvent(name, {bubbles: name !== 'mouseenter' && name !== 'mouseleave'," +
+            "  cancelable: true, view: window, clientX: x, clientY: y, detail: detail || 1})); }" +
+            "function click() { mouse('mouseover'); mouse('mouseenter'); mouse('mousedown'); if (element.focus) { element.focus(); } mouse('mouseup'); mouse('click'); }" +
+            "function key(name, character) { element.dispatchEvent(new KeyboardEvent(name, {bubbles: true, cancelable: true, key: character," +
+            "  code: 'Key' + character, charCode: name === 'keypress' ? character.charCodeAt(0) : 0, keyCode: character.charCodeAt(0)})); }" +
+            "function typeText() { click(); for (var i = 0; i < text.length; i++) { var character = text.charAt(i);" +
+            "  key('keydown', character); key('keypress', character);" +
+            "  if ('value' in element) { element.value += character; } else if (element.isContentEditable) { element.textContent += character; }" +
+            "  element.dispatchEvent(new InputEvent('input', {bubbles: true, data: character, inputType: 'insertText'})); key('keyup', character); }" +
+            "  element.dispatchEvent(new Event('change', {bubbles: true})); }" +
+            "function drag() { var transfer = new DataTransfer(); mouse('mousedown');" +
+            "  ['dragstart', 'drag', 'dragend'].forEach(function(name) { element.dispatchEvent(new DragEvent(name, {bubbles: true, cancelable: true," +
+            "    clientX: x + (name === 'dragstart' ? 0 : 100), clientY: y, dataTransfer: transfer})); }); mouse('mouseup'); }" +
+            "if (['click', 'mousedown', 'mouseup', 'focus', 'blur'].indexOf(type) >= 0) { click(); }" +
+            "else if (type === 'mouseover' || type === 'mouseenter') { mouse('mouseover'); mouse('mouseenter'); }" +
+            "else if (type === 'mouseout' || type === 'mouseleave') { mouse('mouseover'); mouse('mouseenter'); mouse('mouseout'); mouse('mouseleave'); }" +
+            "else if (['keydown', 'keypress', 'keyup', 'input', 'change'].indexOf(type) >= 0) { typeText(); }" +
+            "else if (type === 'dblclick') { click(); mouse('mousedown', 2); mouse('mouseup', 2); mouse('click', 2); mouse('dblclick', 2); }" +
+            "else if (type === 'drag' || type === 'dragstart' || type === 'dragend') { drag(); }" +
+            "else { return 'unsupported'; }" +
+            "return [x, y, resolved[1]];";
+
+    private ChromeDriver driver;
+    private int fidelity;
+    private boolean cacheElements;
+    private Map<String, Timer> triggerTimers;
+
+    public DispatchEventHandler(int fidelity) {
+        this(fidelity, false);
+    }
+
+    // With cacheElements, xpaths are resolved through the page-side ElementCache
+    public DispatchEventHandler(int fidelity, boolean cacheElements) {
+        this.fidelity = fidelity;
+        this.cacheElements = cacheElements;
+        this.triggerTimers = new HashMap<>();
+    }
+
+    public void setDriver(ChromeDriver driver) {
+        this.driver = driver;
+    }
+
+    @Override
+    public void triggerEvent(Event event) throws InteractionBotException {
+        if (event.getEventType().equals("baseEvent")) {
+            System.out.println("Base event triggered" + event.getEventType());
+            return;
+        }
+        Timer triggerTimer = triggerTimers.computeIfAbsent(event.getEventType(), type -> Metrics.timer("trigger_event", "type", type));
+        long start = triggerTimer.start();
+        try {
+            DeadlineExecutor.callInteraction("trigger_event", () -> dispatch(event));
+        } catch (UnreachableBrowserException ex) {
+            throw new InteractionBotException(InteractionBotException.UNREACHEABLE_BROWSER);
+        } catch (JavascriptException ignored) {
+            // The page's own handlers threw, which is no different from a user triggering the same handler
+        } catch (WebDriverException ex) {
+            throw new InteractionBotException(InteractionBotException.INTERACTION_EXCEPTION, ex.getMessage());
+        } finally {
+            triggerTimer.stop(start);
+        }
+        BrowserInteractions.closeExtraneousTabs(driver, 1);
+    }
+
+    private void dispatch(Event event) throws InteractionBotException {
+        Object result = driver.executeScript(DISPATCH_SCRIPT, event.getXpath(), event.getEventType(), TYPED_TEXT, fidelity == SYNTHETIC, cacheElements);
+        if ("missing".equals(result)) {
+            throw new InteractionBotException(InteractionBotException.ELEMENT_NOT_FOUND);
+        } else if ("unsupported".equals(result)) {
+            throw new InteractionBotException(InteractionBotException.INTERACTION_NOT_SUPPORTED);
+        }
+        List<Number> centre = (List<Number>) result;
+        if (cacheElements) {
+            ElementCache.countLookup(centre.get(2).intValue());
+        }
+        if (fidelity == INPUT) {
+            dispatchInput(event.getEventType(), centre.get(0).doubleValue(), centre.get(1).doubleValue());
+        }
+    }
+
+    private void dispatchInput(String eventType, double x, double y) throws InteractionBotException {
+        if (eventType.equals("click") || eventType.equals("mousedown") || eventType.equals("mouseup") || eventType.equals("focus") || eventType.equals("blur")) {
+            click(x, y, 1);
+        } else if (eventType.equals("mouseover") || eventType.equals("mouseenter")) {
+            mouse("mouseMoved", x, y, 0);
+        } else if (eventType.equals("mouseout") || eventType.equals("mouseleave")) {
+            mouse("mouseMoved", x, y, 0);
+            mouse("mouseMoved", x + 100, y + 100, 0);
+        } else if (eventType.equals("keydown") || eventType.equals("keypress") || eventType.equals("keyup") || eventType.equals("input") || eventType.equals("change")) {
+            click(x, y, 1);
+            for (char character: TYPED_TEXT.toCharArray()) {
+                key("keyDown", character);
+                key("keyUp", character);
+            }
+        } else if (eventType.equals("dblclick")) {
+            click(x, y, 1);
+            click(x, y, 2);
+        } else if (eventType.equals("drag") || eventType.equals("dragstart") || eventType.equals("dragend")) {
+            mouse("mouseMoved", x, y, 0);
+            mouse("mousePressed", x, y, 1);
+            mouse("mouseMoved", x + 100, y, 1);
+            mouse("mouseReleased", x + 100, y, 1);
+        } else {
+            throw new InteractionBotException(InteractionBotException.INTERACTION_NOT_SUPPORTED);
+        }
+    }
+
+    private void click(double x, double y, int clickCount) {
+        mouse("mouseMoved", x, y, 0);
+        mouse("mousePressed", x, y, clickCount);
+        mouse("mouseReleased", x, y, clickCount);
+    }
+
+    private void mouse(String type, double x, double y, int clickCount) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", type);
+        params.put("x", x);
+        params.put("y", y);
+        if (clickCount > 0) {
+            params.put("button", "left");
+            params.put("clickCount", clickCount);
+        }
+        BrowserInteractions.executeCdpCommand(driver, "Input.dispatchMouseEvent", params);
+    }
+
+    private void key(String type, char character) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("type", type);
+        params.put("key", String.valueOf(character));
+        params.put("code", "Key" + character);
+        params.put("windowsVirtualKeyCode", (int) character);
+        if (type.equals("keyDown")) {
+            params.put("text", String.valueOf(character));
+        }
+        BrowserInteractions.executeCdpCommand(driver, "Input.dispatchKeyEvent", params);
+    }
+}
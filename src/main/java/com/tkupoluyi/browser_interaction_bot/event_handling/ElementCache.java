@@ -0,0 +1,80 @@
+package com.tkupoluyi.browser_interaction_bot.event_handling;
+
+import com.tkupoluyi.browser_interaction_bot.metrics.Counter;
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.List;
+
+// Resolves crawler xpaths inside the page and keeps the resolved elements in a page-side map keyed by xpath. The map
+// lives on the window, so navigating to a new document starts from an empty cache, and a MutationObserver clears it
+// whenever elements are added, removed, or have their id or class changed, since any of those can change what an
+// xpath points to. The (//tag[@id|@class='...'])[n] and /html/body prefixes the crawler generates, followed by
+// /tag[n] steps, are resolved with querySelectorAll and child walks instead of a full XPath evaluation.
+public class ElementCache {
+    static final String RESOLVER_SCRIPT =
+            "var cache = window.__bibElementCache;" +
+            "if (!cache) {" +
+            "  cache = window.__bibElementCache = new Map();" +
+            "  new MutationObserver(function() { cache.clear(); })" +
+            "    .observe(document, {subtree: true, childList: true, attributes: true, attributeFilter: ['id', 'class']});" +
+            "}" +
+            "function cached(key) { var element = cache.get(key); return element && element.isConnected ? element : null; }" +
+            "function resolveCompiled(xpath) {" +
+            "  var head = /^\\(\\/\\/([a-zA-Z0-9-]+)\\[@(id|class)='([^']*)'\\]\\)\\[(\\d+)\\]/.exec(xpath), element, rest;" +
+            "  if (head) {" +
+            "    element = cached(head[0]);" +
+            "    if (!element) {" +
+            "      element = document.querySelectorAll(head[1] + '[' + head[2] + '=' + JSON.stringify(head[3]) + ']')[head[4] - 1] || null;" +
+            "      if (element) { cache.set(head[0], element); }" +
+            "    }" +
+            "    rest = xpath.substring(head[0].length);" +
+            "  } else if (xpath.indexOf('/html/body') === 0) {" +
+            "    element = document.body; rest = xpath.substring(10);" +
+            "  } else { return undefined; }" +
+            "  var step = /^\\/([a-zA-Z0-9-]+)\\[(\\d+)\\]/, stepMatch;" +
+            "  while (rest.length > 0) {" +
+            "    stepMatch = step.exec(rest);" +
+            "    if (!stepMatch) { return undefined; }" +
+            "    if (!element) { return null; }" +
+            "    var index = +stepMatch[2], found = null;" +
+            "    for (var child = element.firstElementChild; child; child = child.nextElementSibling) {" +
+            "      if (child.localName === stepMatch[1] && --index === 0) { found = child; break; }" +
+            "    }" +
+            "    element = found; rest = rest.substring(stepMatch[0].length);" +
+            "  }" +
+            "  return element;" +
+            "}" +
+            // Returns [element or null, 0 cached, 1 compiled, 2 evaluated]
+            "function resolve(xpath) {" +
+            "  var element = cached(xpath);" +
+            "  if (element) { return [element, 0]; }" +
+            "  var source = 1;" +
+            "  element = resolveCompiled(xpath);" +
+            "  if (element === undefined) {" +
+            "    source = 2;" +
+            "    try { element = document.evaluate(xpath, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue; } catch (e) { element = null; }" +
+            "  }" +
+            "  if (element) { cache.set(xpath, element); }" +
+            "  return [element, source];" +
+            "}";
+
+    private static final String FIND_SCRIPT = RESOLVER_SCRIPT + "return resolve(arguments[0]);";
+    private static final Counter[] lookupCounters = {
+            Metrics.counter("element_lookups", "source", "cached"),
+            Metrics.counter("element_lookups", "source", "compiled"),
+            Metrics.counter("element_lookups", "source", "evaluated")
+    };
+
+    // Returns null when the xpath matches nothing
+    public static WebElement find(ChromeDriver driver, String xpath) {
+        List<Object> result = (List<Object>) driver.executeScript(FIND_SCRIPT, xpath);
+        countLookup(((Number) result.get(1)).intValue());
+        return (WebElement) result.get(0);
+    }
+
+    static void countLookup(int source) {
+        lookupCounters[source].increment();
+    }
+}
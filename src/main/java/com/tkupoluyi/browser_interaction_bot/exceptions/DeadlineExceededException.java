@@ -0,0 +1,18 @@
+package com.tkupoluyi.browser_interaction_bot.exceptions;
+
+// Thrown when a driver or DevTools call runs past its deadline. The browser behind it is presumed hung, so this is
+// deliberately not a WebDriverException and is not swallowed by the handlers of ordinary driver failures.
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private String operation;
+
+    public DeadlineExceededException(String operation, long deadlineMillis) {
+        super(operation + " exceeded its deadline of " + deadlineMillis + "ms");
+        this.operation = operation;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+}
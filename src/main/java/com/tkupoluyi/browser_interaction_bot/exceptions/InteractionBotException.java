@@ -1,5 +1,7 @@
 package com.tkupoluyi.browser_interaction_bot.exceptions;
 
+import com.tkupoluyi.browser_interaction_bot.metrics.Metrics;
+
 public class InteractionBotException extends Exception {
     int exceptionType;
     String exceptionMessage;
@@ -9,16 +11,25 @@ public class InteractionBotException extends Exception {
     public static final int UNSPECIFIED_EXCEPTION = 3;
     public static final int INTERACTION_EXCEPTION = 4;
     public static final int INTERACTION_NOT_SUPPORTED = 5;
+    public static final int DEADLINE_EXCEEDED = 6;
+
+    private static final String[] TYPE_NAMES = {"none", "unreachable_browser", "element_not_found", "unspecified", "interaction", "interaction_not_supported", "deadline_exceeded"};
 
+    // Exceptions are thrown where they are created, so counting construction counts every failure by type
     public InteractionBotException(int exceptionType) {
         this.exceptionType = exceptionType;
+        Metrics.counter("interaction_exceptions", "type", getTypeName(exceptionType)).increment();
     }
 
     public InteractionBotException(int exceptionType, String exceptionMessage) {
-        this.exceptionType = exceptionType;
+        this(exceptionType);
         this.exceptionMessage = exceptionMessage;
     }
 
+    public static String getTypeName(int exceptionType) {
+        return exceptionType >= 0 && exceptionType < TYPE_NAMES.length ? TYPE_NAMES[exceptionType] : String.valueOf(exceptionType);
+    }
+
     public int getExceptionType() {
         return exceptionType;
     }
@@ -0,0 +1,31 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Best-first on expected new states per unit of crawl time. A child whose resulting page has an element count not
+// seen before is likely a new state, and its cost grows with the predecessor chain replayed before every probe, so
+// cheap novel states are crawled first and an interrupted crawl has covered as many states as it could.
+public class AnytimeStrategy extends BestFirstStrategy {
+    private Set<Long> seenElementCounts;
+
+    public AnytimeStrategy() {
+        super(ScoringFunction.WEIGHTED);
+        this.seenElementCounts = new HashSet<>();
+    }
+
+    @Override
+    public String getName() {
+        return "anytime";
+    }
+
+    @Override
+    protected double score(Event event) {
+        long elementCount = getElementCount(event);
+        double novelty = elementCount < 0 || seenElementCounts.add(elementCount) ? 1.0 : 0.1;
+        double value = novelty * (1.0 + Math.max(0.0, super.score(event) + 0.5 * event.getDepth()));
+        return value / (event.getDepth() + 1);
+    }
+}
@@ -0,0 +1,118 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.util.*;
+
+// Crawls the highest scoring parent first. Children wait until their parent is processed, because the parent's yield
+// is part of their score, and ties keep discovery order.
+public class BestFirstStrategy extends ExplorationStrategy {
+    private ScoringFunction scoringFunction;
+    private PriorityQueue<ScoredEvent> events;
+    private List<Event> pendingEvents;
+    private Map<Event, long[]> features;
+    private long sequence;
+
+    public BestFirstStrategy(ScoringFunction scoringFunction) {
+        this.scoringFunction = scoringFunction;
+        this.events = new PriorityQueue<>();
+        this.pendingEvents = new ArrayList<>();
+        this.features = new IdentityHashMap<>();
+        this.sequence = 0;
+    }
+
+    @Override
+    public String getName() {
+        return "best";
+    }
+
+    @Override
+    public boolean usesFeatures() {
+        return true;
+    }
+
+    @Override
+    public void observe(Event event, long elementCount, long domDelta, boolean visible) {
+        features.put(event, new long[]{elementCount, domDelta, visible ? 1 : 0});
+    }
+
+    @Override
+    public void parentProcessed(Event parentEvent) {
+        flushPending();
+    }
+
+    @Override
+    public boolean offer(Event event) {
+        pendingEvents.add(event);
+        return true;
+    }
+
+    @Override
+    public Event poll() {
+        flushPending();
+        ScoredEvent scoredEvent = events.poll();
+        return scoredEvent == null ? null : scoredEvent.event;
+    }
+
+    @Override
+    public Event peek() {
+        flushPending();
+        ScoredEvent scoredEvent = events.peek();
+        return scoredEvent == null ? null : scoredEvent.event;
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        flushPending();
+        List<Event> queuedEvents = new ArrayList<>();
+        for (ScoredEvent scoredEvent: events) {
+            queuedEvents.add(scoredEvent.event);
+        }
+        return queuedEvents.iterator();
+    }
+
+    @Override
+    public int size() {
+        return events.size() + pendingEvents.size();
+    }
+
+    // Events offered without observed features, such as the base event or a resumed queue, score on depth alone
+    protected double score(Event event) {
+        long[] eventFeatures = features.remove(event);
+        int parentYield = event.getParent() == null ? 0 : event.getParent().getChildren().size();
+        if (eventFeatures == null) {
+            return scoringFunction.score(event.getDepth(), parentYield, 0, false);
+        }
+        return scoringFunction.score(event.getDepth(), parentYield, eventFeatures[1], eventFeatures[2] == 1);
+    }
+
+    protected long getElementCount(Event event) {
+        long[] eventFeatures = features.get(event);
+        return eventFeatures == null ? -1 : eventFeatures[0];
+    }
+
+    private void flushPending() {
+        for (Event event: pendingEvents) {
+            events.add(new ScoredEvent(event, score(event), sequence++));
+        }
+        pendingEvents.clear();
+    }
+
+    private static class ScoredEvent implements Comparable<ScoredEvent> {
+        private Event event;
+        private double score;
+        private long sequence;
+
+        ScoredEvent(Event event, double score, long sequence) {
+            this.event = event;
+            this.score = score;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ScoredEvent other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(sequence, other.sequence);
+        }
+    }
+}
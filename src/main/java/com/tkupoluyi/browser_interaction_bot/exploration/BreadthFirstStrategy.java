@@ -0,0 +1,41 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// The original crawl order, parents are crawled in the order they were discovered
+public class BreadthFirstStrategy extends ExplorationStrategy {
+    private ArrayDeque<Event> events = new ArrayDeque<>();
+
+    @Override
+    public String getName() {
+        return "bfs";
+    }
+
+    @Override
+    public boolean offer(Event event) {
+        return events.offerLast(event);
+    }
+
+    @Override
+    public Event poll() {
+        return events.pollFirst();
+    }
+
+    @Override
+    public Event peek() {
+        return events.peekFirst();
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        return events.iterator();
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+}
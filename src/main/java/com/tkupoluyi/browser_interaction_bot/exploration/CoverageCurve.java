@@ -0,0 +1,32 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import java.io.FileWriter;
+import java.io.IOException;
+
+// Appends one row per processed parent, so coverage over time can be plotted and strategies compared on the same site
+public class CoverageCurve {
+    private FileWriter writer;
+    private long startTimeMillis;
+
+    public CoverageCurve(String fileName, String strategyName, long startTimeMillis) throws IOException {
+        this.writer = new FileWriter(fileName);
+        this.startTimeMillis = startTimeMillis;
+        writer.write("# strategy " + strategyName + "\n");
+        writer.write("elapsed_ms\tparents_processed\tevents_discovered\tdistinct_states\tqueued\n");
+    }
+
+    public synchronized void record(int parentsProcessed, int eventsDiscovered, int distinctStates, int queued) {
+        try {
+            writer.write((System.currentTimeMillis() - startTimeMillis) + "\t" + parentsProcessed + "\t" + eventsDiscovered + "\t" + distinctStates + "\t" + queued + "\n");
+            writer.flush();
+        } catch (IOException ex) {
+            System.out.println("Error writing coverage curve");
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,42 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// Crawls the most recently discovered parent first, following one chain of events as deep as it goes
+public class DepthFirstStrategy extends ExplorationStrategy {
+    private ArrayDeque<Event> events = new ArrayDeque<>();
+
+    @Override
+    public String getName() {
+        return "dfs";
+    }
+
+    @Override
+    public boolean offer(Event event) {
+        events.offerFirst(event);
+        return true;
+    }
+
+    @Override
+    public Event poll() {
+        return events.pollFirst();
+    }
+
+    @Override
+    public Event peek() {
+        return events.peekFirst();
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        return events.iterator();
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+}
@@ -0,0 +1,37 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.util.AbstractQueue;
+
+// Orders the parents still waiting to be crawled. Strategies are queues, so the crawl loops, the checkpoint and the
+// budget report work unchanged with any of them. Strategies that rank parents get the features measured when each
+// child was triggered through observe, before the child is offered.
+public abstract class ExplorationStrategy extends AbstractQueue<Event> {
+
+    public static ExplorationStrategy create(String name) {
+        if (name.equals("dfs")) {
+            return new DepthFirstStrategy();
+        } else if (name.equals("best")) {
+            return new BestFirstStrategy(ScoringFunction.WEIGHTED);
+        } else if (name.equals("anytime")) {
+            return new AnytimeStrategy();
+        } else if (!name.equals("bfs")) {
+            System.out.println("Unknown exploration strategy, " + name);
+        }
+        return new BreadthFirstStrategy();
+    }
+
+    public abstract String getName();
+
+    // Whether the crawl should measure the page after each triggered child, only ranking strategies need it
+    public boolean usesFeatures() {
+        return false;
+    }
+
+    // elementCount is the number of elements on the page after event fired, domDelta the change from its parent state
+    public void observe(Event event, long elementCount, long domDelta, boolean visible) { }
+
+    // Called once all candidates were probed from parentEvent, so its yield of children is known
+    public void parentProcessed(Event parentEvent) { }
+}
@@ -0,0 +1,12 @@
+package com.tkupoluyi.browser_interaction_bot.exploration;
+
+public interface ScoringFunction {
+    // Rewards children that changed the page a lot, were visible, and whose parent revealed many children,
+    // and penalizes the predecessor chain that must be replayed to reach them
+    ScoringFunction WEIGHTED = (depth, parentYield, domDelta, visible) ->
+            Math.log1p(Math.abs(domDelta)) + (visible ? 1.0 : 0.0) + Math.log1p(parentYield) - 0.5 * depth;
+
+    // depth is the number of predecessors replayed before the event, parentYield the number of children its parent
+    // revealed, domDelta the element count change the event caused
+    double score(int depth, int parentYield, long domDelta, boolean visible);
+}
@@ -0,0 +1,44 @@
+package com.tkupoluyi.browser_interaction_bot.graph;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Big-endian records after a magic number: 'N' id length-prefixed event type and xpath for nodes, 'E' source target for edges
+public class BinaryAdjacencyGraphWriter extends GraphWriter {
+    private static final int MAGIC = 0x42494247;
+
+    public BinaryAdjacencyGraphWriter(String outputDirectory) {
+        super(outputDirectory + "/output.adj");
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        writeInt(MAGIC);
+    }
+
+    @Override
+    protected void writeNode(int nodeId, Event event) throws IOException {
+        write(new byte[]{'N'});
+        writeInt(nodeId);
+        writeString(event.getEventType());
+        writeString(event.getXpath());
+    }
+
+    @Override
+    protected void writeEdge(int sourceId, int targetId) throws IOException {
+        write(new byte[]{'E'});
+        writeInt(sourceId);
+        writeInt(targetId);
+    }
+
+    @Override
+    protected void writeFooter() { }
+
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        write(bytes);
+    }
+}
@@ -0,0 +1,33 @@
+package com.tkupoluyi.browser_interaction_bot.graph;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.io.IOException;
+
+public class DOTGraphWriter extends GraphWriter {
+
+    public DOTGraphWriter(String outputDirectory) {
+        super(outputDirectory + "/output.dot");
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        write("digraph eventGraph {\n");
+    }
+
+    @Override
+    protected void writeNode(int nodeId, Event event) throws IOException {
+        String label = (event.getXpath() + " | " + event.getEventType()).replace("\\", "\\\\").replace("\"", "\\\"");
+        write("n" + nodeId + " [label=\"" + label + "\"];\n");
+    }
+
+    @Override
+    protected void writeEdge(int sourceId, int targetId) throws IOException {
+        write("n" + sourceId + "->n" + targetId + ";\n");
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        write("}");
+    }
+}
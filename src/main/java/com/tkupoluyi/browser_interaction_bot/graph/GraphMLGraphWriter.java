@@ -0,0 +1,41 @@
+package com.tkupoluyi.browser_interaction_bot.graph;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.io.IOException;
+
+public class GraphMLGraphWriter extends GraphWriter {
+
+    public GraphMLGraphWriter(String outputDirectory) {
+        super(outputDirectory + "/output.graphml");
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        write("<key id=\"event\" for=\"node\" attr.name=\"event\" attr.type=\"string\"/>\n");
+        write("<key id=\"xpath\" for=\"node\" attr.name=\"xpath\" attr.type=\"string\"/>\n");
+        write("<graph id=\"eventGraph\" edgedefault=\"directed\">\n");
+    }
+
+    @Override
+    protected void writeNode(int nodeId, Event event) throws IOException {
+        write("<node id=\"n" + nodeId + "\"><data key=\"event\">" + escape(event.getEventType()) + "</data><data key=\"xpath\">"
+                + escape(event.getXpath()) + "</data></node>\n");
+    }
+
+    @Override
+    protected void writeEdge(int sourceId, int targetId) throws IOException {
+        write("<edge source=\"n" + sourceId + "\" target=\"n" + targetId + "\"/>\n");
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        write("</graph>\n</graphml>\n");
+    }
+
+    private String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;").replace("'", "&apos;");
+    }
+}
@@ -0,0 +1,126 @@
+package com.tkupoluyi.browser_interaction_bot.graph;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Streams the event graph to disk as it is discovered. Every event gets a stable numeric id the first time it is seen,
+// and each node and edge is written exactly once through a buffered file channel, so nothing is held back until close.
+public abstract class GraphWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private String fileName;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private Map<Event, Integer> nodeIds;
+    private Set<Long> writtenEdges;
+    private boolean failed;
+
+    protected GraphWriter(String fileName) {
+        this.fileName = fileName;
+        this.nodeIds = new IdentityHashMap<>();
+        this.writtenEdges = new HashSet<>();
+        this.failed = false;
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void writeNode(int nodeId, Event event) throws IOException;
+
+    protected abstract void writeEdge(int sourceId, int targetId) throws IOException;
+
+    protected abstract void writeFooter() throws IOException;
+
+    public synchronized int addNode(Event event) {
+        Integer nodeId = nodeIds.get(event);
+        if (nodeId == null) {
+            nodeId = nodeIds.size();
+            nodeIds.put(event, nodeId);
+            try {
+                open();
+                writeNode(nodeId, event);
+            } catch (IOException ex) {
+                reportFailure();
+            }
+        }
+        return nodeId;
+    }
+
+    public synchronized void addEdge(Event source, Event target) {
+        int sourceId = addNode(source);
+        int targetId = addNode(target);
+        if (writtenEdges.add(((long) sourceId << 32) | targetId)) {
+            try {
+                writeEdge(sourceId, targetId);
+            } catch (IOException ex) {
+                reportFailure();
+            }
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            open();
+            writeFooter();
+            flush();
+            channel.close();
+        } catch (IOException ex) {
+            reportFailure();
+        }
+    }
+
+    private void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        writeHeader();
+    }
+
+    protected void write(String text) throws IOException {
+        write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > buffer.capacity()) {
+            channel.write(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    protected void writeInt(int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void reportFailure() {
+        if (!failed) {
+            failed = true;
+            System.out.println("Error writing graph to " + fileName);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tkupoluyi.browser_interaction_bot.graph;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+
+// One JSON object per line: {"node":id,"event":...,"xpath":...} the first time a node is seen, {"source":id,"target":id} per edge
+public class JsonLinesGraphWriter extends GraphWriter {
+
+    public JsonLinesGraphWriter(String outputDirectory) {
+        super(outputDirectory + "/output.edges.jsonl");
+    }
+
+    @Override
+    protected void writeHeader() { }
+
+    @Override
+    protected void writeNode(int nodeId, Event event) throws IOException {
+        write("{\"node\":" + nodeId + ",\"event\":\"" + JSONValue.escape(event.getEventType()) + "\",\"xpath\":\""
+                + JSONValue.escape(event.getXpath()) + "\"}\n");
+    }
+
+    @Override
+    protected void writeEdge(int sourceId, int targetId) throws IOException {
+        write("{\"source\":" + sourceId + ",\"target\":" + targetId + "}\n");
+    }
+
+    @Override
+    protected void writeFooter() { }
+}
@@ -0,0 +1,37 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter {
+    private String name;
+    private String labelName;
+    private String labelValue;
+    private LongAdder count;
+
+    Counter(String name, String labelName, String labelValue) {
+        this.name = name;
+        this.labelName = labelName;
+        this.labelValue = labelValue;
+        this.count = new LongAdder();
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabelName() {
+        return labelName;
+    }
+
+    public String getLabelValue() {
+        return labelValue;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,43 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Process-wide registry of timers and counters. Instruments are looked up once per name and label and then only
+// touch striped adders, so recording on the crawl threads costs a few nanoseconds whether or not anything is exported.
+public class Metrics {
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    static volatile boolean jfrEnabled = false;
+
+    public static Timer timer(String name) {
+        return timer(name, null, null);
+    }
+
+    public static Timer timer(String name, String labelName, String labelValue) {
+        String key = labelName == null ? name : name + "{" + labelName + "=" + labelValue + "}";
+        Timer timer = timers.get(key);
+        return timer != null ? timer : timers.computeIfAbsent(key, k -> new Timer(name, labelName, labelValue));
+    }
+
+    public static Counter counter(String name, String labelName, String labelValue) {
+        String key = name + "{" + labelName + "=" + labelValue + "}";
+        Counter counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new Counter(name, labelName, labelValue));
+    }
+
+    // Commits a JFR event for every timed operation and writes the recording to fileName when the JVM exits
+    public static void enableJfr(String fileName) throws IOException {
+        TimingEvent.startRecording(fileName);
+        jfrEnabled = true;
+    }
+
+    static Collection<Timer> getTimers() {
+        return timers.values();
+    }
+
+    static Collection<Counter> getCounters() {
+        return counters.values();
+    }
+}
@@ -0,0 +1,38 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import com.tkupoluyi.browser_interaction_bot.Event;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// One JSON line per probe: the parent's depth, the candidate, how the probe ended and how long the trigger took
+public class ProbeLog {
+    private BufferedWriter writer;
+
+    public ProbeLog(String fileName) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(fileName, true));
+    }
+
+    public synchronized void record(Event parentEvent, Event candidateEvent, String outcome, long triggerNanos) {
+        JSONObject line = new JSONObject();
+        line.put("depth", parentEvent.getDepth());
+        line.put("event", candidateEvent.getEventType());
+        line.put("xpath", candidateEvent.getXpath());
+        line.put("outcome", outcome);
+        line.put("triggerMicros", triggerNanos / 1000);
+        try {
+            writer.write(line.toJSONString());
+            writer.write('\n');
+        } catch (IOException ex) {
+            System.out.println("Error writing probe log");
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException ignored) { }
+    }
+}
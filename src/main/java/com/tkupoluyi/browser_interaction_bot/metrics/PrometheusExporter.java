@@ -0,0 +1,118 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Renders the registry in the Prometheus text format, served on /metrics and/or rewritten to a file every interval
+// and once more when the JVM exits
+public class PrometheusExporter {
+    private static final String PREFIX = "bib_";
+
+    private String fileName;
+    private HttpServer server;
+    private ScheduledExecutorService fileWriter;
+
+    public PrometheusExporter(String fileName, int port, long intervalMillis) throws IOException {
+        this.fileName = fileName;
+        if (port > 0) {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-server");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+        }
+        if (fileName != null) {
+            fileWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            fileWriter.scheduleAtFixedRate(this::writeFile, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::writeFile));
+        }
+    }
+
+    private synchronized void writeFile() {
+        try {
+            Files.write(Paths.get(fileName), render().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            System.out.println("Error writing metrics to " + fileName);
+        }
+    }
+
+    public String render() {
+        StringBuilder output = new StringBuilder();
+        // Samples of one metric have to be adjacent, below a single TYPE line
+        List<Timer> timers = new ArrayList<>(Metrics.getTimers());
+        timers.sort(Comparator.comparing(Timer::getName).thenComparing(timer -> String.valueOf(timer.getLabelValue())));
+        List<Counter> counters = new ArrayList<>(Metrics.getCounters());
+        counters.sort(Comparator.comparing(Counter::getName).thenComparing(Counter::getLabelValue));
+        String lastName = null;
+        for (Timer timer: timers) {
+            String name = PREFIX + timer.getName() + "_seconds";
+            if (!name.equals(lastName)) {
+                output.append("# TYPE ").append(name).append(" histogram\n");
+                lastName = name;
+            }
+            long cumulativeCount = 0;
+            for (int i = 0; i < Timer.BUCKET_BOUNDS_MILLIS.length; i++) {
+                cumulativeCount += timer.getBucketCount(i);
+                appendSample(output, name + "_bucket", timer.getLabelName(), timer.getLabelValue(), "le", String.valueOf(Timer.BUCKET_BOUNDS_MILLIS[i] / 1000.0), cumulativeCount);
+            }
+            cumulativeCount += timer.getBucketCount(Timer.BUCKET_BOUNDS_MILLIS.length);
+            appendSample(output, name + "_bucket", timer.getLabelName(), timer.getLabelValue(), "le", "+Inf", cumulativeCount);
+            output.append(name).append("_sum").append(labels(timer.getLabelName(), timer.getLabelValue(), null, null)).append(' ')
+                    .append(timer.getTotalNanos() / 1e9).append('\n');
+            appendSample(output, name + "_count", timer.getLabelName(), timer.getLabelValue(), null, null, timer.getCount());
+        }
+        for (Counter counter: counters) {
+            String name = PREFIX + counter.getName() + "_total";
+            if (!name.equals(lastName)) {
+                output.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            appendSample(output, name, counter.getLabelName(), counter.getLabelValue(), null, null, counter.getCount());
+        }
+        return output.toString();
+    }
+
+    private void appendSample(StringBuilder output, String name, String labelName, String labelValue, String extraName, String extraValue, long value) {
+        output.append(name).append(labels(labelName, labelValue, extraName, extraValue)).append(' ').append(value).append('\n');
+    }
+
+    private String labels(String labelName, String labelValue, String extraName, String extraValue) {
+        StringBuilder labels = new StringBuilder();
+        if (labelName != null) {
+            labels.append(labelName).append("=\"").append(labelValue.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        if (extraName != null) {
+            if (labels.length() > 0) {
+                labels.append(',');
+            }
+            labels.append(extraName).append("=\"").append(extraValue).append('"');
+        }
+        return labels.length() == 0 ? "" : "{" + labels + "}";
+    }
+}
@@ -0,0 +1,93 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// A latency histogram with fixed millisecond buckets, cumulative only when it is exported
+public class Timer {
+    static final long[] BUCKET_BOUNDS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private String name;
+    private String labelName;
+    private String labelValue;
+    private LongAdder count;
+    private LongAdder totalNanos;
+    private AtomicLongArray bucketCounts;
+
+    Timer(String name, String labelName, String labelValue) {
+        this.name = name;
+        this.labelName = labelName;
+        this.labelValue = labelValue;
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.bucketCounts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    // Records the time since startNanos and returns it
+    public long stop(long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        record(elapsedNanos);
+        return elapsedNanos;
+    }
+
+    public void record(long elapsedNanos) {
+        count.increment();
+        totalNanos.add(elapsedNanos);
+        long elapsedMillis = elapsedNanos / 1000000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && elapsedMillis >= BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        bucketCounts.incrementAndGet(bucket);
+        if (Metrics.jfrEnabled) {
+            TimingEvent.commit(name, labelValue, elapsedNanos);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabelName() {
+        return labelName;
+    }
+
+    public String getLabelValue() {
+        return labelValue;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    // Estimates the q quantile by interpolating linearly within the bucket it falls in, as Prometheus does
+    public double getQuantileMillis(double q) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        double rank = q * total;
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+            long bucketCount = bucketCounts.get(bucket);
+            if (bucketCount > 0 && cumulative + bucketCount >= rank) {
+                long lowerBound = bucket == 0 ? 0 : BUCKET_BOUNDS_MILLIS[bucket - 1];
+                return lowerBound + (BUCKET_BOUNDS_MILLIS[bucket] - lowerBound) * (rank - cumulative) / bucketCount;
+            }
+            cumulative += bucketCount;
+        }
+        return BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1];
+    }
+
+    long getBucketCount(int bucket) {
+        return bucketCounts.get(bucket);
+    }
+}
@@ -0,0 +1,43 @@
+package com.tkupoluyi.browser_interaction_bot.metrics;
+
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+// JFR view of every timed operation. Only loaded once JFR output is enabled, so the crawler still runs on JVMs
+// without jdk.jfr.
+@Name("browser_interaction_bot.Timing")
+@Label("Crawl Operation")
+@Category("Browser Interaction Bot")
+@StackTrace(false)
+class TimingEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Detail")
+    String detail;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    static void commit(String operation, String detail, long elapsedNanos) {
+        TimingEvent event = new TimingEvent();
+        if (event.isEnabled()) {
+            event.operation = operation;
+            event.detail = detail;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    // The recording is written to fileName when it stops, which JFR does itself as the JVM exits
+    static void startRecording(String fileName) throws IOException {
+        Recording recording = new Recording();
+        recording.enable(TimingEvent.class);
+        recording.setToDisk(true);
+        recording.setDestination(Paths.get(fileName));
+        recording.start();
+    }
+}
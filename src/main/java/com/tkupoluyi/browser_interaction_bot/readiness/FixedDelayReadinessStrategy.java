@@ -0,0 +1,37 @@
+package com.tkupoluyi.browser_interaction_bot.readiness;
+
+import com.tkupoluyi.browser_interaction_bot.DeadlineExecutor;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+public class FixedDelayReadinessStrategy implements ReadinessStrategy {
+    public static final long[] FIXED_DELAYS_MILLIS = {2000, 1000, 5000};
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    @Override
+    public void waitUntilReady(ChromeDriver driver, int waitType) {
+        // Polls until the document is loaded, giving up after the operation deadline so a page that never finishes
+        // loading is crawled as it is, well before the page load deadline would treat the browser as hung
+        if (waitType == PAGE_LOAD) {
+            long waitMillis = DeadlineExecutor.getOperationDeadlineMillis();
+            long deadline = System.currentTimeMillis() + (waitMillis > 0 ? waitMillis : Long.MAX_VALUE / 2);
+            while (!driver.executeScript("return document.readyState").toString().equals("complete")) {
+                if (System.currentTimeMillis() >= deadline) {
+                    System.out.println("Page did not finish loading within " + waitMillis + "ms");
+                    break;
+                }
+                try {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        try {
+            Thread.sleep(FIXED_DELAYS_MILLIS[waitType]);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}
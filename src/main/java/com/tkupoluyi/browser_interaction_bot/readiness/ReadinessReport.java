@@ -0,0 +1,36 @@
+package com.tkupoluyi.browser_interaction_bot.readiness;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Tracks how long each kind of wait took compared to the fixed delays the crawler used to sleep for
+public class ReadinessReport {
+    private static final String[] WAIT_NAMES = {"page load", "scroll", "screenshot"};
+
+    private AtomicLongArray waitCounts;
+    private AtomicLongArray waitedMillis;
+    private AtomicLongArray savedMillis;
+
+    public ReadinessReport() {
+        waitCounts = new AtomicLongArray(WAIT_NAMES.length);
+        waitedMillis = new AtomicLongArray(WAIT_NAMES.length);
+        savedMillis = new AtomicLongArray(WAIT_NAMES.length);
+    }
+
+    public void record(int waitType, long elapsedMillis) {
+        waitCounts.incrementAndGet(waitType);
+        waitedMillis.addAndGet(waitType, elapsedMillis);
+        savedMillis.addAndGet(waitType, FixedDelayReadinessStrategy.FIXED_DELAYS_MILLIS[waitType] - elapsedMillis);
+    }
+
+    public void print() {
+        System.out.println("Readiness waits:");
+        for (int i = 0; i < WAIT_NAMES.length; i++) {
+            long count = waitCounts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            System.out.println("  " + WAIT_NAMES[i] + ": " + count + " waits, " + (waitedMillis.get(i) / count) + "ms average, "
+                    + (savedMillis.get(i) / count) + "ms saved per wait, " + savedMillis.get(i) + "ms saved in total");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.tkupoluyi.browser_interaction_bot.readiness;
+
+import org.openqa.selenium.chrome.ChromeDriver;
+
+public interface ReadinessStrategy {
+    int PAGE_LOAD = 0;
+    int SCROLL = 1;
+    int SCREENSHOT = 2;
+
+    void waitUntilReady(ChromeDriver driver, int waitType);
+}
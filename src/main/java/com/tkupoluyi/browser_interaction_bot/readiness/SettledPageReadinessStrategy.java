@@ -0,0 +1,151 @@
+package com.tkupoluyi.browser_interaction_bot.readiness;
+
+import com.tkupoluyi.browser_interaction_bot.CdpSession;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Returns as soon as the page has settled: the main frame has reached network idle, no requests are in flight, no
+// request started or finished and no DOM mutations happened for a quiet window, followed by two animation frames.
+// Requests are followed through Network.* events and page loads through Page.lifecycleEvent on a DevTools session,
+// so scripts, images, stylesheets, fonts, iframes, beacons and service worker fetches all count, as do requests
+// issued before any page script runs.
+public class SettledPageReadinessStrategy implements ReadinessStrategy {
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    // Waits for the document to load and for a quiet window without DOM mutations, then for two animation frames
+    private static final String DOM_SETTLE_SCRIPT =
+            "var callback = arguments[arguments.length - 1];" +
+            "var timeout = arguments[0], quietWindow = arguments[1];" +
+            "var start = Date.now(), lastChange = start;" +
+            "var observer = new MutationObserver(function() { lastChange = Date.now(); });" +
+            "observer.observe(document, {subtree: true, childList: true, attributes: true, characterData: true});" +
+            "function finish() {" +
+            "  observer.disconnect();" +
+            "  var frame = window.requestAnimationFrame || function(f) { setTimeout(f, 16); };" +
+            "  frame(function() { frame(function() { callback(Date.now() - start); }); });" +
+            "}" +
+            "function check() {" +
+            "  var now = Date.now();" +
+            "  if (document.readyState === 'complete' && now - lastChange >= quietWindow) { finish(); return; }" +
+            "  if (now - start >= timeout) { finish(); return; }" +
+            "  setTimeout(check, 50);" +
+            "}" +
+            "check();";
+
+    // Network activity of one tab, fed by DevTools events on their own thread
+    private static class NetworkTracker {
+        // Long-lived streams never finish, so they would keep the page from ever settling
+        private static final Set<String> IGNORED_RESOURCE_TYPES = new HashSet<>(Arrays.asList("EventSource", "WebSocket"));
+
+        private CdpSession session;
+        private String mainFrameId;
+        private Set<String> pendingRequests = new HashSet<>();
+        private boolean mainFrameLoading;
+        private long lastActivityMillis;
+
+        NetworkTracker(ChromeDriver driver) {
+            this.session = new CdpSession(driver);
+            Map<String, Object> frameTree = (Map<String, Object>) session.send("Page.getFrameTree", new HashMap<>()).get("frameTree");
+            this.mainFrameId = (String) ((Map<String, Object>) frameTree.get("frame")).get("id");
+            // Enabling lifecycle events replays the ones the current document already reached, networkIdle included
+            this.mainFrameLoading = !"complete".equals(driver.executeScript("return document.readyState"));
+            session.addListener("Network.requestWillBeSent", this::requestStarted);
+            session.addListener("Network.loadingFinished", this::requestEnded);
+            session.addListener("Network.loadingFailed", this::requestEnded);
+            session.addListener("Page.lifecycleEvent", this::lifecycleEvent);
+            session.send("Network.enable", new HashMap<>());
+            session.send("Page.enable", new HashMap<>());
+            Map<String, Object> query = new HashMap<>();
+            query.put("enabled", true);
+            session.send("Page.setLifecycleEventsEnabled", query);
+        }
+
+        private synchronized void requestStarted(Map<String, Object> event) {
+            if (!IGNORED_RESOURCE_TYPES.contains(event.get("type"))) {
+                pendingRequests.add((String) event.get("requestId"));
+                lastActivityMillis = System.currentTimeMillis();
+            }
+        }
+
+        private synchronized void requestEnded(Map<String, Object> event) {
+            if (pendingRequests.remove(event.get("requestId"))) {
+                lastActivityMillis = System.currentTimeMillis();
+            }
+        }
+
+        private synchronized void lifecycleEvent(Map<String, Object> event) {
+            if (!mainFrameId.equals(event.get("frameId"))) {
+                return;
+            }
+            String name = (String) event.get("name");
+            if (name.equals("init")) {
+                mainFrameLoading = true;
+                lastActivityMillis = System.currentTimeMillis();
+            } else if (name.equals("networkIdle") || name.equals("networkAlmostIdle")) {
+                // Requests in flight are tracked on their own, the lifecycle covers those sent before the tracker was
+                // attached. Almost idle still allows two open connections, which lets long-lived streams settle.
+                mainFrameLoading = false;
+            }
+        }
+
+        // True when the main frame is not loading and no request has been in flight for the quiet window
+        synchronized boolean isIdle(long quietWindowMillis) {
+            return !mainFrameLoading && pendingRequests.isEmpty() && System.currentTimeMillis() - lastActivityMillis >= quietWindowMillis;
+        }
+    }
+
+    private long timeoutMillis;
+    private long quietWindowMillis;
+    private Map<ChromeDriver, NetworkTracker> networkTrackers;
+
+    public SettledPageReadinessStrategy() {
+        this(10000, 500);
+    }
+
+    public SettledPageReadinessStrategy(long timeoutMillis, long quietWindowMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.quietWindowMillis = quietWindowMillis;
+        this.networkTrackers = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    @Override
+    public void waitUntilReady(ChromeDriver driver, int waitType) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            NetworkTracker networkTracker = getNetworkTracker(driver);
+            while (true) {
+                while (!networkTracker.isIdle(quietWindowMillis) && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                }
+                long remainingMillis = deadline - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    return;
+                }
+                driver.manage().timeouts().setScriptTimeout(remainingMillis + 5000, TimeUnit.MILLISECONDS);
+                driver.executeAsyncScript(DOM_SETTLE_SCRIPT, remainingMillis, quietWindowMillis);
+                // Requests started while the DOM was settling mean another round
+                if (networkTracker.isIdle(quietWindowMillis)) {
+                    return;
+                }
+            }
+        } catch (WebDriverException ex) {
+            System.out.println("Readiness check failed, " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private NetworkTracker getNetworkTracker(ChromeDriver driver) {
+        synchronized (networkTrackers) {
+            NetworkTracker networkTracker = networkTrackers.get(driver);
+            if (networkTracker == null) {
+                networkTracker = new NetworkTracker(driver);
+                networkTrackers.put(driver, networkTracker);
+            }
+            return networkTracker;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.event_handling.EventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.junit.Test;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CrawlWorkerTest {
+    private static class FailingEventHandler implements EventHandler {
+        @Override
+        public void setDriver(ChromeDriver driver) {
+        }
+
+        @Override
+        public void triggerEvent(Event event) {
+            throw new IllegalStateException("unexpected script result");
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void completesTasksWhoseProbeThrowsAndKeepsRunning() throws InterruptedException {
+        BlockingQueue<ProbeTask> taskQueue = new LinkedBlockingQueue<>();
+        CrawlWorker worker = new CrawlWorker(null, new FailingEventHandler(), "file:///fixture.html", taskQueue);
+        Event parentEvent = new Event("baseEvent", "/html/body");
+        worker.setCurrentParent(parentEvent, null);
+        Thread workerThread = new Thread(worker);
+        workerThread.setDaemon(true);
+        workerThread.start();
+
+        // The first probe throws from the event handler, the second one from rebuilding the parent state
+        for (int i = 1; i <= 2; i++) {
+            CountDownLatch batchLatch = new CountDownLatch(1);
+            ProbeTask task = new ProbeTask(parentEvent, new Event("click", "/html/body/button[" + i + "]"), batchLatch);
+            taskQueue.add(task);
+            assertTrue(batchLatch.await(5, TimeUnit.SECONDS));
+            assertFalse(task.isTriggered());
+            assertEquals(InteractionBotException.UNSPECIFIED_EXCEPTION, task.getFailureType());
+        }
+        assertTrue(workerThread.isAlive());
+        workerThread.interrupt();
+    }
+
+    @Test
+    public void countsOnlyTheFirstCompletion() {
+        CountDownLatch batchLatch = new CountDownLatch(2);
+        ProbeTask task = new ProbeTask(new Event("baseEvent", "/html/body"), new Event("click", "/html/body/a[1]"), batchLatch);
+        task.complete(true, 0);
+        task.complete(false, InteractionBotException.UNSPECIFIED_EXCEPTION);
+        assertEquals(1, batchLatch.getCount());
+        assertTrue(task.isTriggered());
+    }
+}
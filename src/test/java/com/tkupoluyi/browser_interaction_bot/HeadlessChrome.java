@@ -0,0 +1,50 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.junit.Assume;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+// Helpers for the tests that crawl local fixtures in headless Chrome. Those tests are skipped when no ChromeDriver is
+// found, either through the webdriver.chrome.driver property or on the PATH.
+class HeadlessChrome {
+    static void assumeAvailable() {
+        Assume.assumeTrue("ChromeDriver not found, set webdriver.chrome.driver or put chromedriver on the PATH", isAvailable());
+    }
+
+    static boolean isAvailable() {
+        String driverPath = System.getProperty("webdriver.chrome.driver");
+        if (driverPath != null) {
+            return new File(driverPath).canExecute();
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String directory: path.split(File.pathSeparator)) {
+            if (new File(directory, "chromedriver").canExecute()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String getFixtureUrl(String name) {
+        return HeadlessChrome.class.getResource("/fixtures/" + name).toString();
+    }
+
+    // Every edge of the event tree below event as "parent -> child", in the order the crawl added them
+    static List<String> getEdges(Event event) {
+        List<String> edges = new ArrayList<>();
+        addEdges(event, edges);
+        return edges;
+    }
+
+    private static void addEdges(Event event, List<String> edges) {
+        for (Event childEvent: event.getChildren()) {
+            edges.add(event.getEventType() + " " + event.getXpath() + " -> " + childEvent.getEventType() + " " + childEvent.getXpath());
+            addEdges(childEvent, edges);
+        }
+    }
+}
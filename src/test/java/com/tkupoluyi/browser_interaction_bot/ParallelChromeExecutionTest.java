@@ -0,0 +1,43 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import com.tkupoluyi.browser_interaction_bot.event_handling.DefaultEventHandler;
+import com.tkupoluyi.browser_interaction_bot.exceptions.InteractionBotException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParallelChromeExecutionTest {
+    @Rule
+    public TemporaryFolder outputFolder = new TemporaryFolder();
+
+    @Before
+    public void assumeChrome() {
+        HeadlessChrome.assumeAvailable();
+    }
+
+    @Test
+    public void findsTheSameDependenciesAsTheSerialCrawl() throws Exception {
+        String url = HeadlessChrome.getFixtureUrl("menu.html");
+        List<String> serialEdges = HeadlessChrome.getEdges(crawl(new ChromeExecution(url, new DefaultEventHandler(),
+                outputFolder.newFolder("serial").getPath(), null, true)));
+        List<String> parallelEdges = HeadlessChrome.getEdges(crawl(new ParallelChromeExecution(url, DefaultEventHandler::new,
+                outputFolder.newFolder("parallel").getPath(), null, true, 2)));
+
+        // The menu items are hidden until the button opens the menu, so they depend on it
+        assertTrue(serialEdges.contains("baseEvent /html/body -> click (//button[@id='open'])[1]"));
+        assertTrue(serialEdges.contains("click (//button[@id='open'])[1] -> click (//a[@class='item'])[1]"));
+        assertTrue(serialEdges.contains("click (//button[@id='open'])[1] -> click (//a[@class='item'])[2]"));
+        assertEquals(new HashSet<>(serialEdges), new HashSet<>(parallelEdges));
+        assertEquals(serialEdges.size(), parallelEdges.size());
+    }
+
+    private Event crawl(ChromeExecution execution) throws InteractionBotException {
+        return execution.execute();
+    }
+}
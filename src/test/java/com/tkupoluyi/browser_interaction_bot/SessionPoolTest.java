@@ -0,0 +1,48 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SessionPoolTest {
+    @Before
+    public void assumeChrome() {
+        HeadlessChrome.assumeAvailable();
+    }
+
+    @Test
+    public void drivesEachContextThroughItsOwnTab() {
+        SessionPool sessionPool = new SessionPool(ChromeExecution.createChromeOptions(null, true), 2, true);
+        try {
+            ChromeDriver firstDriver = sessionPool.borrow();
+            ChromeDriver secondDriver = sessionPool.borrow();
+            assertTrue(firstDriver.getWindowHandle().endsWith(SessionPool.getContextTarget(firstDriver)));
+            assertTrue(secondDriver.getWindowHandle().endsWith(SessionPool.getContextTarget(secondDriver)));
+            assertNotEquals(firstDriver.getWindowHandle(), secondDriver.getWindowHandle());
+
+            // Cookies belong to the browser context, so the other session does not see them
+            Map<String, Object> cookieQuery = new HashMap<>();
+            cookieQuery.put("name", "session");
+            cookieQuery.put("value", "first");
+            cookieQuery.put("url", "http://example.test/");
+            BrowserInteractions.executeCdpCommand(firstDriver, "Network.setCookie", cookieQuery);
+            assertEquals(1, getCookies(firstDriver).size());
+            assertEquals(0, getCookies(secondDriver).size());
+
+            sessionPool.release(firstDriver);
+            sessionPool.release(secondDriver);
+        } finally {
+            sessionPool.close();
+        }
+    }
+
+    private static List getCookies(ChromeDriver driver) {
+        return (List) BrowserInteractions.executeCdpCommand(driver, "Network.getAllCookies", new HashMap<>()).get("cookies");
+    }
+}
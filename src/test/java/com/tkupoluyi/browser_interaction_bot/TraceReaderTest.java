@@ -0,0 +1,83 @@
+package com.tkupoluyi.browser_interaction_bot;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String traceFileName;
+
+    // base -> open -> item 1..3, one record per processed event
+    @Before
+    public void writeTrace() throws IOException {
+        traceFileName = new File(folder.getRoot(), "trace").getPath();
+        TraceWriter writer = new TraceWriter(traceFileName, 1, 0);
+        Event baseEvent = new Event("baseEvent", "/html/body");
+        Event openEvent = new Event("click", "(//button[@id='open'])[1]");
+        baseEvent.addChild(openEvent);
+        writer.append(baseEvent);
+        writer.append(openEvent);
+        for (int i = 1; i <= 3; i++) {
+            Event itemEvent = new Event("click", "(//a[@class='item'])[" + i + "]");
+            openEvent.addChild(itemEvent);
+            writer.append(itemEvent);
+        }
+        writer.close();
+    }
+
+    @Test
+    public void seeksThroughTheIndex() throws IOException {
+        try (TraceReader reader = new TraceReader(traceFileName)) {
+            reader.seek(3);
+            assertChain(reader.nextChain(), "(//a[@class='item'])[2]", 3);
+            assertChain(reader.nextChain(), "(//a[@class='item'])[3]", 3);
+            assertNull(reader.nextChain());
+        }
+    }
+
+    @Test
+    public void seeksByReadingThroughWithoutTheIndex() throws IOException {
+        assertTrue(new File(traceFileName + ".idx").delete());
+        try (TraceReader reader = new TraceReader(traceFileName)) {
+            reader.seek(3);
+            assertChain(reader.nextChain(), "(//a[@class='item'])[2]", 3);
+            reader.seek(1);
+            assertChain(reader.nextChain(), "(//button[@id='open'])[1]", 2);
+        }
+    }
+
+    @Test
+    public void endsAtATornRecord() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(traceFileName, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        try (TraceReader reader = new TraceReader(traceFileName)) {
+            reader.seek(4);
+            assertNull(reader.nextChain());
+        }
+        new File(traceFileName + ".idx").delete();
+        try (TraceReader reader = new TraceReader(traceFileName)) {
+            reader.seek(3);
+            assertChain(reader.nextChain(), "(//a[@class='item'])[2]", 3);
+            assertNull(reader.nextChain());
+        }
+    }
+
+    private static void assertChain(List<Event> chain, String xpath, int length) {
+        assertNotNull(chain);
+        assertEquals(length, chain.size());
+        assertEquals("/html/body", chain.get(0).getXpath());
+        assertEquals(xpath, chain.get(length - 1).getXpath());
+    }
+}